@@ -19,57 +19,89 @@ package com.icechen.qr_simple;
 import android.app.Activity;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.content.res.AssetFileDescriptor;
 import android.media.AudioManager;
-import android.media.MediaPlayer;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.os.Vibrator;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
 import java.io.Closeable;
-import java.io.IOException;
 
 /**
  * 哔哔声管理器 {@link CaptureActivity}.
+ *
+ * 提示音预先加载到{@link SoundPool}里，播放时只是通知音频服务，不会阻塞调用的线程；
+ * 震动在{@link ScanScheduler}的线程中执行。连续扫描时短时间内的多个结果只提示一次，提示不会在主线程中排队。
  */
-final class BeepManager implements MediaPlayer.OnErrorListener, Closeable {
+final class BeepManager implements SoundPool.OnLoadCompleteListener, Closeable {
 
   private static final String TAG = BeepManager.class.getSimpleName();
 
   private static final float BEEP_VOLUME = 0.10f;
   private static final long VIBRATE_DURATION = 200L;
+  //两次提示之间的最小间隔，比提示音本身稍长
+  private static final long MIN_FEEDBACK_INTERVAL_MS = 400L;
 
-  private final Activity activity;
-  private MediaPlayer mediaPlayer;
+  private final Context context;
+  private final Runnable vibrateTask;
+  private SoundPool soundPool;
+  private int beepSoundId;
+  private boolean beepLoaded;
+  private ScanScheduler.Task pendingVibration;
   private boolean playBeep;
   private boolean vibrate;
+  private long lastFeedbackMillis;
 
-  BeepManager(Activity activity) {
-    this.activity = activity;
-    this.mediaPlayer = null;
+  BeepManager(Context context) {
+    this.context = context;
+    vibrateTask = new Runnable() {
+      @Override
+      public void run() {
+        //震动
+        Vibrator vibrator = (Vibrator) BeepManager.this.context.getSystemService(Context.VIBRATOR_SERVICE);
+        vibrator.vibrate(VIBRATE_DURATION);
+      }
+    };
+    lastFeedbackMillis = -MIN_FEEDBACK_INTERVAL_MS;
     updatePrefs();
   }
 
   synchronized void updatePrefs() {
-    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(activity);
-    playBeep = shouldBeep(prefs, activity);
-    //vibrate = prefs.getBoolean(PreferencesActivity.KEY_VIBRATE, false);
-    if (playBeep && mediaPlayer == null) {
+    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+    playBeep = shouldBeep(prefs, context);
+    vibrate = prefs.getBoolean(PreferencesActivity.KEY_VIBRATE, false);
+    if (playBeep && soundPool == null) {
       // The volume on STREAM_SYSTEM is not adjustable, and users found it too loud,
       // so we now play on the music stream.
-      activity.setVolumeControlStream(AudioManager.STREAM_MUSIC);
-      mediaPlayer = buildMediaPlayer(activity);
+      if (context instanceof Activity) {
+        ((Activity) context).setVolumeControlStream(AudioManager.STREAM_MUSIC);
+      }
+      soundPool = buildSoundPool();
     }
   }
 
+  /**
+   * 播放提示音并震动，可以在主线程中直接调用，不会等待
+   */
   synchronized void playBeepSoundAndVibrate() {
-    if (playBeep && mediaPlayer != null) {
-      mediaPlayer.start();
+    long now = SystemClock.uptimeMillis();
+    if (now - lastFeedbackMillis < MIN_FEEDBACK_INTERVAL_MS) {
+      //上一次提示还没结束，合并成一次
+      return;
+    }
+    lastFeedbackMillis = now;
+    if (playBeep && beepLoaded) {
+      soundPool.play(beepSoundId, BEEP_VOLUME, BEEP_VOLUME, 1, 0, 1.0f);
     }
     if (vibrate) {
-      //震动
-      Vibrator vibrator = (Vibrator) activity.getSystemService(Context.VIBRATOR_SERVICE);
-      vibrator.vibrate(VIBRATE_DURATION);
+      //在调度线程中震动，还没开始的上一次震动直接取消
+      if (pendingVibration != null) {
+        pendingVibration.cancel();
+      }
+      pendingVibration = ScanScheduler.get().execute(vibrateTask);
     }
   }
 
@@ -86,52 +118,53 @@ final class BeepManager implements MediaPlayer.OnErrorListener, Closeable {
   }
 
   /**
-   * 创建MediaPlayer
-   * @param activity
+   * 创建SoundPool并开始异步加载提示音，加载完成前不会播放
    * @return
    */
-  private MediaPlayer buildMediaPlayer(Context activity) {
-    //new一个MediaPlayer对象
-    MediaPlayer mediaPlayer = new MediaPlayer();
-    try {
-      //获得音效文件
-      AssetFileDescriptor file = activity.getResources().openRawResourceFd(R.raw.beep);
-      try {
-        mediaPlayer.setDataSource(file.getFileDescriptor(), file.getStartOffset(), file.getLength());
-      } finally {
-        file.close();
-      }
-      mediaPlayer.setOnErrorListener(this);
-      mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-      mediaPlayer.setLooping(false);
-      mediaPlayer.setVolume(BEEP_VOLUME, BEEP_VOLUME);
-      mediaPlayer.prepare();
-      return mediaPlayer;
-    } catch (IOException ioe) {
-      Log.w(TAG, ioe);
-      mediaPlayer.release();
-      return null;
-    }
+  @SuppressWarnings("deprecation")
+  private SoundPool buildSoundPool() {
+    //SoundPool.Builder需要API 21
+    SoundPool pool = new SoundPool(1, AudioManager.STREAM_MUSIC, 0);
+    pool.setOnLoadCompleteListener(this);
+    beepLoaded = false;
+    beepSoundId = pool.load(context, R.raw.beep, 1);
+    return pool;
   }
 
   @Override
-  public synchronized boolean onError(MediaPlayer mp, int what, int extra) {
-    if (what == MediaPlayer.MEDIA_ERROR_SERVER_DIED) {
-      // we are finished, so put up an appropriate error toast if required and finish
-      activity.finish();
+  public synchronized void onLoadComplete(SoundPool pool, int sampleId, int status) {
+    if (pool != soundPool || sampleId != beepSoundId) {
+      return;
+    }
+    if (status == 0) {
+      beepLoaded = true;
     } else {
-      // possibly media player error, so release and recreate
-      close();
-      updatePrefs();
+      Log.w(TAG, "Could not load beep sound: " + status);
     }
-    return true;
   }
 
   @Override
   public synchronized void close() {
-    if (mediaPlayer != null) {
-      mediaPlayer.release();
-      mediaPlayer = null;
+    if (soundPool != null) {
+      final SoundPool pool = soundPool;
+      soundPool = null;
+      beepLoaded = false;
+      long playing = lastFeedbackMillis + MIN_FEEDBACK_INTERVAL_MS - SystemClock.uptimeMillis();
+      if (playing > 0L) {
+        //扫到结果后Activity马上就结束了，等提示音播完再释放
+        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+          @Override
+          public void run() {
+            pool.release();
+          }
+        }, playing);
+      } else {
+        pool.release();
+      }
+    }
+    if (pendingVibration != null) {
+      pendingVibration.cancel();
+      pendingVibration = null;
     }
   }
 
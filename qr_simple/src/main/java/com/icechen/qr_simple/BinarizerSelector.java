@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Random;
+
+/**
+ * 根据这台设备上实际测到的识别率和耗时选择二值化方式。
+ *
+ * 平时使用得分最高的方式，得分是平滑后的识别率除以每帧的平均耗时；
+ * 每隔{@link #EXPLORE_INTERVAL}帧轮流换成其他方式，和成败无关，起点每次随机，这样会话的第一帧也会轮到其他方式。
+ * 只统计画面中确实有码的帧，即解码成功或者找到了可能的结果点的帧，空画面的失败不计入任何方式。
+ * 统计数据保存在单独的SharedPreferences文件中，下次打开时继续使用。
+ *
+ * 只在解码线程中使用，不需要同步。
+ */
+final class BinarizerSelector {
+
+  private static final String TAG = BinarizerSelector.class.getSimpleName();
+
+  static final String PREFS_NAME = "binarizer_stats";
+  //样本少于这个数的方式不参与选择，只在轮换时使用
+  private static final int MIN_ATTEMPTS = 30;
+  //次数超过这个数以后全部减半，让最近的表现占更大的比重
+  private static final int MAX_ATTEMPTS = 2000;
+  //耗时的平滑量，避免非常快的方式仅凭耗时胜出
+  private static final long COST_OFFSET_NANOS = 5000000L;
+  //每隔这么多帧换一次其他方式
+  private static final int EXPLORE_INTERVAL = 3;
+
+  private final SharedPreferences prefs;
+  private final BinarizerStrategy forced;
+  private final BinarizerStrategy[] strategies;
+  private final int[] attempts;
+  private final int[] successes;
+  private final long[] nanos;
+  private int frames;
+  private int alternate;
+
+  /**
+   * @param prefs 保存统计数据的文件，见{@link #PREFS_NAME}
+   * @param forced 用户指定的方式，为null时自动选择
+   */
+  BinarizerSelector(SharedPreferences prefs, BinarizerStrategy forced) {
+    this.prefs = prefs;
+    this.forced = forced;
+    strategies = BinarizerStrategy.values();
+    attempts = new int[strategies.length];
+    successes = new int[strategies.length];
+    nanos = new long[strategies.length];
+    for (BinarizerStrategy strategy : strategies) {
+      int i = strategy.ordinal();
+      attempts[i] = prefs.getInt(strategy.name() + "_attempts", 0);
+      successes[i] = prefs.getInt(strategy.name() + "_successes", 0);
+      nanos[i] = prefs.getLong(strategy.name() + "_nanos", 0L);
+    }
+    //扫描成功通常就结束会话，固定从0开始的话第一帧总是得分最高的方式
+    frames = new Random().nextInt(EXPLORE_INTERVAL);
+  }
+
+  /**
+   * @return 这一帧使用的方式
+   */
+  BinarizerStrategy select() {
+    if (forced != null) {
+      return forced;
+    }
+    BinarizerStrategy best = getBest();
+    if (++frames % EXPLORE_INTERVAL != 0 || strategies.length == 1) {
+      return best;
+    }
+    do {
+      alternate = (alternate + 1) % strategies.length;
+    } while (strategies[alternate] == best);
+    return strategies[alternate];
+  }
+
+  /**
+   * 每解码完一帧调用一次
+   *
+   * @param strategy 这一帧使用的方式
+   * @param success 是否解码成功
+   * @param foundPoints 是否找到了可能的结果点
+   * @param elapsedNanos 这一帧解码的耗时
+   */
+  void onFrameDecoded(BinarizerStrategy strategy, boolean success, boolean foundPoints, long elapsedNanos) {
+    if (!success && !foundPoints) {
+      //画面中多半没有码，哪种方式都解不出来
+      return;
+    }
+    int i = strategy.ordinal();
+    attempts[i]++;
+    nanos[i] += elapsedNanos;
+    if (success) {
+      successes[i]++;
+    }
+    if (attempts[i] > MAX_ATTEMPTS) {
+      attempts[i] /= 2;
+      successes[i] /= 2;
+      nanos[i] /= 2;
+    }
+  }
+
+  /**
+   * @return 样本足够的方式中得分最高的一个，都不够时返回默认的第一个
+   */
+  BinarizerStrategy getBest() {
+    BinarizerStrategy best = strategies[0];
+    double bestScore = -1.0;
+    for (BinarizerStrategy strategy : strategies) {
+      int i = strategy.ordinal();
+      if (attempts[i] < MIN_ATTEMPTS) {
+        continue;
+      }
+      double successRate = (successes[i] + 1.0) / (attempts[i] + 2.0);
+      double score = successRate / (nanos[i] / attempts[i] + COST_OFFSET_NANOS);
+      if (score > bestScore) {
+        bestScore = score;
+        best = strategy;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * 保存统计数据，扫描结束时在解码线程中调用
+   */
+  void save() {
+    SharedPreferences.Editor editor = prefs.edit();
+    for (BinarizerStrategy strategy : strategies) {
+      int i = strategy.ordinal();
+      editor.putInt(strategy.name() + "_attempts", attempts[i]);
+      editor.putInt(strategy.name() + "_successes", successes[i]);
+      editor.putLong(strategy.name() + "_nanos", nanos[i]);
+      if (attempts[i] > 0) {
+        Log.d(TAG, strategy + ": " + successes[i] + '/' + attempts[i] + " decoded, " +
+            nanos[i] / attempts[i] / 1000L + " us per frame");
+      }
+    }
+    editor.apply();
+  }
+
+}
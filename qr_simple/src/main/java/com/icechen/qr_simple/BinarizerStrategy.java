@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * 可选的二值化方式。
+ *
+ * 每种方式创建的都是可以跨帧复用的{@link ReusableBinarizer}，由{@link BinarizerSelector}在运行时选择。
+ * 第一个是没有统计数据时的默认选择。
+ */
+enum BinarizerStrategy {
+
+  /**
+   * 分块计算局部阈值，能应付阴影和渐变，适合大多数情况
+   */
+  HYBRID {
+    @Override
+    ReusableBinarizer create(LuminanceSource source, CancelToken cancelToken) {
+      return new ReusableHybridBinarizer(source);
+    }
+  },
+
+  /**
+   * 整个画面使用一个阈值，开销小得多，适合对比度好的标签，在一些低端传感器上反而更好
+   */
+  GLOBAL_HISTOGRAM {
+    @Override
+    ReusableBinarizer create(LuminanceSource source, CancelToken cancelToken) {
+      return new ReusableGlobalHistogramBinarizer(source);
+    }
+  },
+
+  /**
+   * 基于积分图的逐像素自适应阈值，开销固定，阈值没有块边界
+   */
+  INTEGRAL {
+    @Override
+    ReusableBinarizer create(LuminanceSource source, CancelToken cancelToken) {
+      return new IntegralBinarizer(source, cancelToken);
+    }
+  };
+
+  /**
+   * @param source 绑定的数据源，之后会被原地更新
+   * @param cancelToken 需要自己检查取消的实现使用，可以为null
+   */
+  abstract ReusableBinarizer create(LuminanceSource source, CancelToken cancelToken);
+
+  /**
+   * @param value 设置中保存的值
+   * @return 对应的方式，AUTO或者无法识别的值返回null，表示自动选择
+   */
+  static BinarizerStrategy parse(String value) {
+    if (value != null) {
+      for (BinarizerStrategy strategy : values()) {
+        if (strategy.name().equals(value)) {
+          return strategy;
+        }
+      }
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+/**
+ * 解码的取消标记。
+ *
+ * {@link com.google.zxing.MultiFormatReader#decodeWithState}一旦开始就无法被中断，
+ * 所以解码路径上会在各个阶段之间、读取每一行亮度数据、以及每次找到可能的结果点时检查这个标记，
+ * 被取消后抛出{@link DecodeCancelledException}尽快退出。
+ *
+ * 可以指定一个父标记，父标记被取消时这个标记也被视为已取消。
+ * 常驻解码线程的标记不会被直接取消，每次扫描会话开始时把父标记换成这次会话的标记，见{@link #setParent}。
+ *
+ * 还可以设置一个截止时间，超过以后同样视为已取消，用来限制每一帧的解码时间，见{@link #setDeadline}。
+ */
+final class CancelToken {
+
+  private volatile CancelToken parent;
+  private volatile boolean cancelled;
+  //System.nanoTime()的截止时间，hasDeadline为false时无效
+  private volatile long deadlineNanos;
+  private volatile boolean hasDeadline;
+
+  CancelToken() {
+    this(null);
+  }
+
+  CancelToken(CancelToken parent) {
+    this.parent = parent;
+  }
+
+  /**
+   * 更换父标记
+   *
+   * @param parent 新的父标记，可以为null
+   */
+  void setParent(CancelToken parent) {
+    this.parent = parent;
+  }
+
+  void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * 设置截止时间，只影响这个标记，不影响父标记
+   *
+   * @param deadlineNanos {@link System#nanoTime()}的截止时间
+   */
+  void setDeadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+    hasDeadline = true;
+  }
+
+  void clearDeadline() {
+    hasDeadline = false;
+  }
+
+  /**
+   * @return 是否设置了截止时间并且已经超过
+   */
+  boolean isDeadlineExceeded() {
+    return hasDeadline && System.nanoTime() - deadlineNanos > 0;
+  }
+
+  boolean isCancelled() {
+    CancelToken theParent = parent;
+    return cancelled || isDeadlineExceeded() || (theParent != null && theParent.isCancelled());
+  }
+
+  /**
+   * @throws DecodeCancelledException 已经被取消时
+   */
+  void throwIfCancelled() {
+    if (isCancelled()) {
+      throw DecodeCancelledException.getInstance();
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * 每次读取亮度数据前检查{@link CancelToken}的LuminanceSource。
+ *
+ * 一维码的Reader逐行读取，二值化也要先读取亮度数据，所以把它套在真正的数据源外面，
+ * 解码就能在读取下一行的时候被取消。
+ */
+final class CancellableLuminanceSource extends LuminanceSource {
+
+  private final LuminanceSource delegate;
+  private final CancelToken cancelToken;
+
+  CancellableLuminanceSource(LuminanceSource delegate, CancelToken cancelToken) {
+    super(delegate.getWidth(), delegate.getHeight());
+    this.delegate = delegate;
+    this.cancelToken = cancelToken;
+  }
+
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    cancelToken.throwIfCancelled();
+    return delegate.getRow(y, row);
+  }
+
+  @Override
+  public byte[] getMatrix() {
+    cancelToken.throwIfCancelled();
+    return delegate.getMatrix();
+  }
+
+  @Override
+  public boolean isCropSupported() {
+    return delegate.isCropSupported();
+  }
+
+  @Override
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    return new CancellableLuminanceSource(delegate.crop(left, top, width, height), cancelToken);
+  }
+
+  @Override
+  public boolean isRotateSupported() {
+    return delegate.isRotateSupported();
+  }
+
+  @Override
+  public LuminanceSource invert() {
+    return new CancellableLuminanceSource(delegate.invert(), cancelToken);
+  }
+
+  @Override
+  public LuminanceSource rotateCounterClockwise() {
+    return new CancellableLuminanceSource(delegate.rotateCounterClockwise(), cancelToken);
+  }
+
+  @Override
+  public LuminanceSource rotateCounterClockwise45() {
+    return new CancellableLuminanceSource(delegate.rotateCounterClockwise45(), cancelToken);
+  }
+
+}
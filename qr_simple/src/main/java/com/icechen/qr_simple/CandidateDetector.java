@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+/**
+ * 在扫描框内寻找可能有条码的区域，并粗略判断是一维码还是二维码。
+ *
+ * 在{@link YPlaneDownsampler}的1/4级上运行，统计每个8x8的格子（原图的32x32）里横向和纵向相邻像素亮度差的平均值，
+ * 纹理足够强的格子算作候选，所有候选格子的外接矩形再向外扩一格就是候选区域。条码的纹理只在一个方向上变化时判断为一维码。
+ * 一帧只需要几万次加减法，比解码便宜得多，在单独的检测线程中运行，见{@link DetectHandler}。
+ *
+ * 只在一个线程中使用，不需要同步。
+ */
+final class CandidateDetector {
+
+  /**
+   * 画面中有什么样的条码
+   */
+  enum Cue {
+    //没有任何纹理，不可能有条码
+    NONE,
+    //纹理只在一个方向上变化
+    ONE_D,
+    TWO_D
+  }
+
+  private static final int CELL_SIZE = 8;
+  //每个像素横向和纵向亮度差之和的平均值，超过它的格子才算有纹理
+  private static final int TEXTURE_THRESHOLD = 16;
+  //一个方向的亮度差是另一个方向的这么多倍时判断为一维码
+  private static final int ONE_D_RATIO = 3;
+
+  private int[] horizontal;
+  private int[] vertical;
+  private int[] samples;
+  private Cue cue;
+  private int left;
+  private int top;
+  private int width;
+  private int height;
+
+  CandidateDetector() {
+    cue = Cue.NONE;
+  }
+
+  /**
+   * 检测一帧，结果用getter读取
+   *
+   * @param luminances 缩小后的扫描框的亮度数据，每行frameWidth个字节
+   * @param frameWidth 缩小后的宽
+   * @param frameHeight 缩小后的高
+   */
+  void detect(byte[] luminances, int frameWidth, int frameHeight) {
+    int columns = (frameWidth + CELL_SIZE - 1) / CELL_SIZE;
+    int rows = (frameHeight + CELL_SIZE - 1) / CELL_SIZE;
+    int cells = columns * rows;
+    if (horizontal == null || horizontal.length < cells) {
+      horizontal = new int[cells];
+      vertical = new int[cells];
+      samples = new int[cells];
+    } else {
+      for (int i = 0; i < cells; i++) {
+        horizontal[i] = 0;
+        vertical[i] = 0;
+        samples[i] = 0;
+      }
+    }
+
+    for (int y = 0; y + 1 < frameHeight; y++) {
+      int offset = y * frameWidth;
+      int cellOffset = (y / CELL_SIZE) * columns;
+      for (int x = 0; x + 1 < frameWidth; x++) {
+        int pixel = luminances[offset + x] & 0xFF;
+        int cell = cellOffset + x / CELL_SIZE;
+        horizontal[cell] += Math.abs((luminances[offset + x + 1] & 0xFF) - pixel);
+        vertical[cell] += Math.abs((luminances[offset + frameWidth + x] & 0xFF) - pixel);
+        samples[cell]++;
+      }
+    }
+
+    int minColumn = columns;
+    int minRow = rows;
+    int maxColumn = -1;
+    int maxRow = -1;
+    long totalHorizontal = 0L;
+    long totalVertical = 0L;
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        int cell = row * columns + column;
+        if (samples[cell] == 0 || horizontal[cell] + vertical[cell] < TEXTURE_THRESHOLD * samples[cell]) {
+          continue;
+        }
+        minColumn = Math.min(minColumn, column);
+        maxColumn = Math.max(maxColumn, column);
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        totalHorizontal += horizontal[cell];
+        totalVertical += vertical[cell];
+      }
+    }
+
+    if (maxColumn < 0) {
+      cue = Cue.NONE;
+      left = 0;
+      top = 0;
+      width = frameWidth;
+      height = frameHeight;
+      return;
+    }
+    if (totalHorizontal >= ONE_D_RATIO * totalVertical || totalVertical >= ONE_D_RATIO * totalHorizontal) {
+      cue = Cue.ONE_D;
+    } else {
+      cue = Cue.TWO_D;
+    }
+    //条码边缘的格子纹理可能不够强，向外扩一格
+    left = Math.max(0, minColumn - 1) * CELL_SIZE;
+    top = Math.max(0, minRow - 1) * CELL_SIZE;
+    width = Math.min(frameWidth, (maxColumn + 2) * CELL_SIZE) - left;
+    height = Math.min(frameHeight, (maxRow + 2) * CELL_SIZE) - top;
+  }
+
+  Cue getCue() {
+    return cue;
+  }
+
+  /**
+   * @return 候选区域的左边，没有候选时是整个扫描框
+   */
+  int getLeft() {
+    return left;
+  }
+
+  int getTop() {
+    return top;
+  }
+
+  int getWidth() {
+    return width;
+  }
+
+  int getHeight() {
+    return height;
+  }
+
+}
@@ -19,6 +19,7 @@ package com.icechen.qr_simple;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.ActivityInfo;
@@ -29,6 +30,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
 import android.preference.PreferenceManager;
+import android.support.v4.content.FileProvider;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.Menu;
@@ -44,12 +46,15 @@ import android.widget.TextView;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.Result;
 import com.google.zxing.ResultMetadataType;
 import com.icechen.qr_simple.camera.CameraManager;
+import com.icechen.qr_simple.camera.CameraSessionHolder;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.Map;
@@ -60,7 +65,7 @@ import java.util.Map;
  * @author dswitkin@google.com (Daniel Switkin)
  * @author Sean Owen
  */
-public class CaptureActivity extends Activity implements SurfaceHolder.Callback {
+public class CaptureActivity extends Activity implements ScanHost, SurfaceHolder.Callback {
 
   private static final String TAG = CaptureActivity.class.getSimpleName();
 
@@ -72,6 +77,19 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
 
   public static final int HISTORY_REQUEST_CODE = 0x0000bacc;
 
+  //结果图片保存在缓存目录下，通过FileProvider以content URI的形式回传
+  private static final String RESULT_IMAGE_DIR = "scan_images";
+  //每个结果一个文件，调用者还在读上一次的URI时不会被覆盖
+  private static final String RESULT_IMAGE_PREFIX = "barcode_";
+  private static final String RESULT_IMAGE_SUFFIX = ".jpg";
+  //比这更早的结果图片在写新图片时删掉
+  private static final long RESULT_IMAGE_MAX_AGE_MS = 24L * 60L * 60L * 1000L;
+  private static final String RESULT_IMAGE_AUTHORITY_SUFFIX = ".qr_simple.fileprovider";
+  private static final int RESULT_IMAGE_QUALITY = 90;
+
+  //录制的预览帧保存在外部存储的应用目录下
+  private static final String FRAME_RECORDING_DIR = "frame_recordings";
+
   private static final Collection<ResultMetadataType> DISPLAYABLE_METADATA_TYPES =
       EnumSet.of(ResultMetadataType.ISSUE_NUMBER,
                  ResultMetadataType.SUGGESTED_PRICE,
@@ -92,19 +110,30 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
   private Collection<BarcodeFormat> decodeFormats;
   private Map<DecodeHintType,?> decodeHints;
   private String characterSet;
+  private String resultPayload;
+  private String recordFramesName;
+  private String replayFramesName;
+  private boolean replayRealTime;
   private InactivityTimer inactivityTimer;
   private BeepManager beepManager;
-  private AmbientLightManager ambientLightManager;
 
-  ViewfinderView getViewfinderView() {
+  @Override
+  public Context getContext() {
+    return this;
+  }
+
+  @Override
+  public ViewfinderView getViewfinderView() {
     return viewfinderView;
   }
 
-  public Handler getHandler() {
+  @Override
+  public Handler getCaptureHandler() {
     return handler;
   }
 
-  CameraManager getCameraManager() {
+  @Override
+  public CameraManager getCameraManager() {
     return cameraManager;
   }
 
@@ -126,9 +155,6 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     //哔哔音效管理器
     beepManager = new BeepManager(this);
 
-    //环境灯光管理器
-    ambientLightManager = new AmbientLightManager(this);
-
     //偏好设置管理器
     PreferenceManager.setDefaultValues(this, R.xml.preferences, false);
   }
@@ -138,7 +164,8 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     super.onResume();
     
     // 在onResume（）中的优势在于，此时View已经完成了测量
-    cameraManager = new CameraManager(getApplication());
+    // 旋转屏幕或者短暂切换应用后，直接使用还没有释放的相机
+    cameraManager = CameraSessionHolder.get().acquire(getApplication());
 
     viewfinderView = (ViewfinderView) findViewById(R.id.viewfinder_view);
     viewfinderView.setCameraManager(cameraManager);
@@ -155,9 +182,8 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
 
 
     beepManager.updatePrefs();
-    ambientLightManager.start(cameraManager);
 
-    inactivityTimer.onResume();
+    inactivityTimer.onResume(cameraManager);
 
     //获得启动这个Activity的Intent
     Intent intent = getIntent();
@@ -169,6 +195,9 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     sourceUrl = null;
     decodeFormats = null;
     characterSet = null;
+    resultPayload = Intents.Scan.RESULT_PAYLOAD_TEXT;
+    recordFramesName = null;
+    replayFramesName = null;
 
     if (intent != null) {
 
@@ -235,6 +264,17 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
 
       characterSet = intent.getStringExtra(Intents.Scan.CHARACTER_SET);
 
+      //回传结果的内容，默认只回传文本
+      String payload = intent.getStringExtra(Intents.Scan.RESULT_PAYLOAD);
+      if (payload != null) {
+        resultPayload = payload;
+      }
+
+      //录制或者回放预览帧，用来复现现场的问题
+      recordFramesName = intent.getStringExtra(Intents.Scan.RECORD_FRAMES);
+      replayFramesName = intent.getStringExtra(Intents.Scan.REPLAY_FRAMES);
+      replayRealTime = intent.getBooleanExtra(Intents.Scan.REPLAY_REAL_TIME, true);
+
     }
 
     SurfaceView surfaceView = (SurfaceView) findViewById(R.id.preview_view);
@@ -288,9 +328,9 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
       handler = null;
     }
     inactivityTimer.onPause();
-    ambientLightManager.stop();
     beepManager.close();
-    cameraManager.closeDriver();
+    //Activity不是正在结束的话，保留相机一段时间，马上恢复时不用重新打开
+    CameraSessionHolder.get().release(cameraManager, !isFinishing());
     //historyManager = null; // Keep for onActivityResult
     if (!hasSurface) {
       SurfaceView surfaceView = (SurfaceView) findViewById(R.id.preview_view);
@@ -426,10 +466,11 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
    * 处理扫描结果
    *
    * @param rawResult 来自于{@link DecodeHandler}，从使用{@link com.icechen.qr_simple.camera.PreviewCallback}
-   *                  中产生的byte[]生成的{@link PlanarYUVLuminanceSource}生成的BinaryBitmap中获得。
+   *                  中产生的byte[]生成的{@link com.icechen.qr_simple.camera.FrameLuminanceSource}生成的BinaryBitmap中获得。
    * @param barcode   相机的灰度位图数据解码。
-   * @param scaleFactor 其实就是{@link PlanarYUVLuminanceSource}中的略缩图。
+   * @param scaleFactor 略缩图和扫描框的尺寸之比，略缩图来自{@link YPlaneDownsampler}。
    */
+  @Override
   public void handleDecode(Result rawResult, Bitmap barcode, float scaleFactor) {
     inactivityTimer.onActivity();
     lastResult = rawResult;
@@ -437,15 +478,15 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     if (fromLiveScan) {
       // bitmap不为空，播放哔哔音效
       beepManager.playBeepSoundAndVibrate();
-      //获得启动它的Intent
-      Intent intent = getIntent();
-      //把Result和Bitmap回传
-      //Result.getText()可以获得二维码的内容
-      intent.putExtra("codedContent",rawResult.getText());
-      intent.putExtra("codedBitmap", barcode);
-      setResult(RESULT_OK,intent);
-      //结束该Activity
-      finish();
+      if (Intents.Scan.RESULT_PAYLOAD_IMAGE_URI.equals(resultPayload)) {
+        //压缩和写文件不在主线程中做，写完以后再回传并结束
+        finishWithResultImage(rawResult, barcode);
+      } else {
+        //把Result回传，回传哪些内容由Intents.Scan.RESULT_PAYLOAD决定
+        setResult(RESULT_OK, buildResultIntent(rawResult, barcode, null));
+        //结束该Activity
+        finish();
+      }
       //在Bitmap上绘制Result中的点
       //drawResultPoints(barcode, scaleFactor, rawResult);
     }
@@ -476,6 +517,158 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     }*/
   }
 
+  /**
+   * 根据{@link Intents.Scan#RESULT_PAYLOAD}创建回传的Intent。
+   * 默认只有文本，略缩图只有在调用者要求时才会以content URI或者Bitmap的形式回传。
+   *
+   * @param rawResult 解码结果
+   * @param barcode 略缩图
+   * @param imageUri 已经写好的略缩图文件，没有时为null
+   * @return 回传给调用者的Intent
+   */
+  private Intent buildResultIntent(Result rawResult, Bitmap barcode, Uri imageUri) {
+    Intent intent = new Intent();
+    //Result.getText()可以获得二维码的内容
+    intent.putExtra("codedContent", rawResult.getText());
+    intent.putExtra(Intents.Scan.RESULT, rawResult.getText());
+    intent.putExtra(Intents.Scan.RESULT_FORMAT, rawResult.getBarcodeFormat().toString());
+
+    if (Intents.Scan.RESULT_PAYLOAD_BITMAP.equals(resultPayload)) {
+      //旧的方式，Bitmap会被完整地复制一份穿过binder
+      intent.putExtra("codedBitmap", barcode);
+    } else if (Intents.Scan.RESULT_PAYLOAD_METADATA.equals(resultPayload)) {
+      putResultMetadata(intent, rawResult);
+    } else if (Intents.Scan.RESULT_PAYLOAD_IMAGE_URI.equals(resultPayload)) {
+      putResultMetadata(intent, rawResult);
+      if (imageUri != null) {
+        intent.putExtra(Intents.Scan.RESULT_IMAGE_URI, imageUri);
+        //只有data上的URI才会被授予读权限
+        intent.setData(imageUri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+      }
+    }
+    return intent;
+  }
+
+  /**
+   * 把原始字节和元数据放到Intent中
+   */
+  private static void putResultMetadata(Intent intent, Result rawResult) {
+    byte[] rawBytes = rawResult.getRawBytes();
+    if (rawBytes != null && rawBytes.length > 0) {
+      intent.putExtra(Intents.Scan.RESULT_BYTES, rawBytes);
+    }
+    Map<ResultMetadataType,?> metadata = rawResult.getResultMetadata();
+    if (metadata != null) {
+      if (metadata.containsKey(ResultMetadataType.UPC_EAN_EXTENSION)) {
+        intent.putExtra(Intents.Scan.RESULT_UPC_EAN_EXTENSION,
+                        metadata.get(ResultMetadataType.UPC_EAN_EXTENSION).toString());
+      }
+      Number orientation = (Number) metadata.get(ResultMetadataType.ORIENTATION);
+      if (orientation != null) {
+        intent.putExtra(Intents.Scan.RESULT_ORIENTATION, orientation.intValue());
+      }
+      String ecLevel = (String) metadata.get(ResultMetadataType.ERROR_CORRECTION_LEVEL);
+      if (ecLevel != null) {
+        intent.putExtra(Intents.Scan.RESULT_ERROR_CORRECTION_LEVEL, ecLevel);
+      }
+      @SuppressWarnings("unchecked")
+      Iterable<byte[]> byteSegments = (Iterable<byte[]>) metadata.get(ResultMetadataType.BYTE_SEGMENTS);
+      if (byteSegments != null) {
+        int i = 0;
+        for (byte[] byteSegment : byteSegments) {
+          intent.putExtra(Intents.Scan.RESULT_BYTE_SEGMENTS_PREFIX + i, byteSegment);
+          i++;
+        }
+      }
+    }
+  }
+
+  /**
+   * 在{@link ScanScheduler}的线程中把略缩图写到缓存目录，写完以后回到主线程回传结果并结束
+   *
+   * @param rawResult 解码结果
+   * @param barcode 略缩图，之后主线程不再使用它
+   */
+  private void finishWithResultImage(final Result rawResult, final Bitmap barcode) {
+    final File imageDir = new File(getCacheDir(), RESULT_IMAGE_DIR);
+    ScanScheduler.get().execute(new Runnable() {
+      @Override
+      public void run() {
+        final File imageFile = writeResultImage(imageDir, barcode);
+        runOnUiThread(new Runnable() {
+          @Override
+          public void run() {
+            if (isFinishing()) {
+              //写文件期间用户已经离开了
+              return;
+            }
+            Uri imageUri = imageFile == null ? null :
+                FileProvider.getUriForFile(CaptureActivity.this, getPackageName() + RESULT_IMAGE_AUTHORITY_SUFFIX, imageFile);
+            setResult(RESULT_OK, buildResultIntent(rawResult, barcode, imageUri));
+            finish();
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * 把略缩图写到缓存目录中一个新的文件里，不能在主线程中调用
+   *
+   * @param imageDir 缓存目录下的图片目录
+   * @param barcode 略缩图
+   * @return 写好的文件，失败时返回null
+   */
+  private static File writeResultImage(File imageDir, Bitmap barcode) {
+    if (barcode == null) {
+      return null;
+    }
+    if (!imageDir.isDirectory() && !imageDir.mkdirs()) {
+      Log.w(TAG, "Couldn't make dir " + imageDir);
+      return null;
+    }
+    deleteOldResultImages(imageDir);
+    File imageFile = null;
+    OutputStream out = null;
+    try {
+      imageFile = File.createTempFile(RESULT_IMAGE_PREFIX, RESULT_IMAGE_SUFFIX, imageDir);
+      out = new FileOutputStream(imageFile);
+      barcode.compress(Bitmap.CompressFormat.JPEG, RESULT_IMAGE_QUALITY, out);
+    } catch (IOException ioe) {
+      Log.w(TAG, "Couldn't write result image", ioe);
+      if (imageFile != null && !imageFile.delete()) {
+        Log.w(TAG, "Couldn't delete " + imageFile);
+      }
+      return null;
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException ioe) {
+          // continue
+        }
+      }
+    }
+    return imageFile;
+  }
+
+  /**
+   * 每次扫描都会留下一个文件，删掉很久以前的，调用者应该早已读完
+   */
+  private static void deleteOldResultImages(File imageDir) {
+    File[] images = imageDir.listFiles();
+    if (images == null) {
+      return;
+    }
+    long oldest = System.currentTimeMillis() - RESULT_IMAGE_MAX_AGE_MS;
+    for (File image : images) {
+      if (image.lastModified() < oldest && !image.delete()) {
+        Log.w(TAG, "Couldn't delete " + image);
+      }
+    }
+  }
+
 /*  *//**
    * 绘制二维码
    *
@@ -546,13 +739,14 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     if (surfaceHolder == null) {
       throw new IllegalStateException("No SurfaceHolder provided");
     }
-    if (cameraManager.isOpen()) {
+    if (cameraManager.isOpen() && !cameraManager.isParked()) {
       //如果相机被占用
       Log.w(TAG, "initCamera() while already open -- late SurfaceView callback?");
       return;
     }
     try {
       cameraManager.openDriver(surfaceHolder);
+      startFrameRecordingOrReplay();
       // Creating the handler starts the preview, which can also throw a RuntimeException.
       if (handler == null) {
         handler = new CaptureActivityHandler(this, decodeFormats, decodeHints, characterSet, cameraManager);
@@ -572,6 +766,33 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     }
   }
 
+  /**
+   * 根据Intent中的{@link Intents.Scan#RECORD_FRAMES}和{@link Intents.Scan#REPLAY_FRAMES}开始录制或者回放。
+   * 失败时只打印日志，继续正常扫描。
+   */
+  private void startFrameRecordingOrReplay() {
+    if (recordFramesName == null && replayFramesName == null) {
+      return;
+    }
+    File recordingDir = getExternalFilesDir(FRAME_RECORDING_DIR);
+    if (recordingDir == null) {
+      Log.w(TAG, "External storage is not available for frame recordings");
+      return;
+    }
+    try {
+      if (replayFramesName != null) {
+        //只取文件名，不允许调用者指定其他目录
+        File file = new File(recordingDir, new File(replayFramesName).getName());
+        cameraManager.startReplay(file, replayRealTime);
+      } else {
+        File file = new File(recordingDir, new File(recordFramesName).getName());
+        cameraManager.startRecording(file);
+      }
+    } catch (IOException ioe) {
+      Log.w(TAG, "Couldn't start frame recording or replay", ioe);
+    }
+  }
+
   /**
    * 显示错误的对话框
    */
@@ -599,6 +820,7 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     lastResult = null;
   }
 
+  @Override
   public void drawViewfinder() {
     viewfinderView.drawViewfinder();
   }
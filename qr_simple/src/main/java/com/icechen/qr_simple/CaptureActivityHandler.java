@@ -18,6 +18,7 @@ package com.icechen.qr_simple;
 
 import android.app.Activity;
 import android.content.ActivityNotFoundException;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
@@ -32,7 +33,6 @@ import android.util.Log;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.Result;
 import com.icechen.qr_simple.camera.CameraManager;
 
@@ -40,7 +40,7 @@ import java.util.Collection;
 import java.util.Map;
 
 /**
- * 这个类处理扫描结果
+ * 这个类处理扫描结果，宿主可以是{@link CaptureActivity}，也可以是嵌入到界面中的{@link ScannerView}
  *
  * @author dswitkin@google.com (Daniel Switkin)
  */
@@ -48,14 +48,16 @@ public final class CaptureActivityHandler extends Handler {
 
   private static final String TAG = CaptureActivityHandler.class.getSimpleName();
 
-  private final CaptureActivity activity;
-  private final DecodeThread decodeThread;
+  private final ScanHost host;
+  private final DecodeSession decodeSession;
   private State state;
+  //检测阶段是否还有没回复的帧请求，同一时间最多只有一个
+  private boolean frameRequested;
   private final CameraManager cameraManager;
 
   private static final int  restart_preview = 1;
   private static final int  decode_succeeded = 2;
-  private static final int  decode_failed = 3;
+  private static final int  frame_detected = 3;
   private static final int  return_scan_result = 4;
   private static final int  launch_product_query = 5;
   private enum State {
@@ -64,17 +66,17 @@ public final class CaptureActivityHandler extends Handler {
     DONE
   }
 
-  CaptureActivityHandler(CaptureActivity activity,
+  CaptureActivityHandler(ScanHost host,
                          Collection<BarcodeFormat> decodeFormats,
                          Map<DecodeHintType,?> baseHints,
                          String characterSet,
                          CameraManager cameraManager) {
-    this.activity = activity;
+    this.host = host;
 
-    //new一个解码线程
-    decodeThread = new DecodeThread(activity, decodeFormats, baseHints, characterSet,
-            new ViewfinderResultPointCallback(activity.getViewfinderView()));
-    decodeThread.start();
+    //绑定到常驻的解码线程
+    decodeSession = new DecodeSession(host, decodeFormats, baseHints, characterSet,
+            new ViewfinderResultPointCallback(host.getViewfinderView()));
+    decodeSession.start();
 
     state = State.SUCCESS;
 
@@ -90,6 +92,10 @@ public final class CaptureActivityHandler extends Handler {
       restartPreviewAndDecode();
 
     } else if (message.what == R.id.decode_succeeded) {
+      if (state == State.DONE) {
+        //会话结束前已经发出的结果，不再交给宿主
+        return;
+      }
       state = State.SUCCESS;
       Bundle bundle = message.getData();
       //用于绘制二维码的Bitmap
@@ -101,31 +107,38 @@ public final class CaptureActivityHandler extends Handler {
          * 这个byte[]来自{@link DecodeHandler}
          *
          * 这个byte[]数组最初是产生于{@link com.google.zxing.client.android.camera.PreviewCallback}
-         * 然后在{@link PlanarYUVLuminanceSource}中产生了一个略缩图，再把这个略缩图转换为Bitmap，在转换为byte[]数组
+         * 然后在{@link YPlaneDownsampler}中产生了一个略缩图，再把这个略缩图转换为Bitmap，在转换为byte[]数组
          */
-        byte[] compressedBitmap = bundle.getByteArray(DecodeThread.BARCODE_BITMAP);
+        byte[] compressedBitmap = bundle.getByteArray(DecodeSession.BARCODE_BITMAP);
         if (compressedBitmap != null) {
           //用byte[]创建Bitmap
           barcode = BitmapFactory.decodeByteArray(compressedBitmap, 0, compressedBitmap.length, null);
           // Mutable copy:
           barcode = barcode.copy(Bitmap.Config.ARGB_8888, true);
         }
-        scaleFactor = bundle.getFloat(DecodeThread.BARCODE_SCALED_FACTOR);
+        scaleFactor = bundle.getFloat(DecodeSession.BARCODE_SCALED_FACTOR);
       }
-      //扫描到结果后调用，在Activity中处理
-      //即把bitmap传回Activity中处理
-      activity.handleDecode((Result) message.obj, barcode, scaleFactor);
+      //扫描到结果后调用，在宿主中处理
+      //即把bitmap传回宿主中处理
+      host.handleDecode((Result) message.obj, barcode, scaleFactor);
 
-    } else if (message.what == R.id.decode_failed) {// We're decoding as fast as possible, so when one decode fails, start another.
-      state = State.PREVIEW;
-      /**
-       * 这里调用后，PreviewCallback就有handler对象了，这是一个{@link DecodeHandler}对象
-       */
-      cameraManager.requestPreviewFrame(decodeThread.getHandler(), R.id.decode);
+    } else if (message.what == R.id.frame_detected) {// We're detecting as fast as possible, so when one frame is handed over, request another.
+      frameRequested = false;
+      if (state == State.PREVIEW) {
+        /**
+         * 这里调用后，PreviewCallback就有handler对象了，这是一个{@link DetectHandler}对象
+         */
+        requestFrame();
+      }
+      //否则已经有了结果，重新开始时再请求新的帧
 
     } else if (message.what == R.id.return_scan_result) {
-      activity.setResult(Activity.RESULT_OK, (Intent) message.obj);
-      activity.finish();
+      Context context = host.getContext();
+      if (context instanceof Activity) {
+        Activity activity = (Activity) context;
+        activity.setResult(Activity.RESULT_OK, (Intent) message.obj);
+        activity.finish();
+      }
 
     } else if (message.what == R.id.launch_product_query) {
       String url = (String) message.obj;
@@ -134,8 +147,9 @@ public final class CaptureActivityHandler extends Handler {
       intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_WHEN_TASK_RESET);
       intent.setData(Uri.parse(url));
 
+      Context context = host.getContext();
       ResolveInfo resolveInfo =
-              activity.getPackageManager().resolveActivity(intent, PackageManager.MATCH_DEFAULT_ONLY);
+              context.getPackageManager().resolveActivity(intent, PackageManager.MATCH_DEFAULT_ONLY);
       String browserPackageName = null;
       if (resolveInfo != null && resolveInfo.activityInfo != null) {
         browserPackageName = resolveInfo.activityInfo.packageName;
@@ -150,7 +164,7 @@ public final class CaptureActivityHandler extends Handler {
       }
 
       try {
-        activity.startActivity(intent);
+        context.startActivity(intent);
       } catch (ActivityNotFoundException ignored) {
         Log.w(TAG, "Can't find anything to handle VIEW of URI " + url);
       }
@@ -161,25 +175,34 @@ public final class CaptureActivityHandler extends Handler {
   public void quitSynchronously() {
     state = State.DONE;
     cameraManager.stopPreview();
-    Message quit = Message.obtain(decodeThread.getHandler(), R.id.quit);
-    quit.sendToTarget();
-    try {
-      // Wait at most half a second; should be enough time, and onPause() will timeout quickly
-      decodeThread.join(500L);
-    } catch (InterruptedException e) {
-      // continue
-    }
+    //先取消正在进行的解码，解码线程会在几毫秒内退出当前帧，不用等这一帧解码完。
+    //解码线程本身不退出，留给下一次扫描
+    // Wait at most half a second; decoding has been cancelled, so this normally returns within a few ms
+    decodeSession.quit(500L);
 
     // Be absolutely sure we don't send any queued up messages
     removeMessages(R.id.decode_succeeded);
-    removeMessages(R.id.decode_failed);
+    removeMessages(R.id.frame_detected);
+  }
+
+  /**
+   * 向检测阶段请求一帧，检测阶段把这一帧交给解码阶段以后回复一次R.id.frame_detected，
+   * 所以检测不用等解码，解码阶段每次都取最新检测好的那一帧
+   */
+  private void requestFrame() {
+    frameRequested = true;
+    cameraManager.requestPreviewFrame(decodeSession.getHandler(), R.id.decode);
   }
 
   private void restartPreviewAndDecode() {
     if (state == State.SUCCESS) {
       state = State.PREVIEW;
-      cameraManager.requestPreviewFrame(decodeThread.getHandler(), R.id.decode);
-      activity.drawViewfinder();
+      decodeSession.nextRound();
+      if (!frameRequested) {
+        //检测阶段还没回复上一次请求，等它回复以后再请求
+        requestFrame();
+      }
+      host.drawViewfinder();
     }
   }
 
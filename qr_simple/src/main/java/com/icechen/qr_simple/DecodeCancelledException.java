@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+/**
+ * 解码被{@link CancelToken}取消时抛出。
+ *
+ * 它是非受检异常，这样才能从ZXing的Reader内部穿出来；
+ * 和ZXing的ReaderException一样不填充调用栈，使用同一个实例。
+ */
+final class DecodeCancelledException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final DecodeCancelledException INSTANCE = new DecodeCancelledException();
+
+  private DecodeCancelledException() {
+    super("Decode cancelled");
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+
+  static DecodeCancelledException getInstance() {
+    return INSTANCE;
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+/**
+ * 一个解码线程的可复用解码结构：亮度数据、Binarizer以及它的反色和旋转视图。
+ *
+ * 调用者（{@link FrameRegion}、多帧融合和慢通道）在尺寸不变时把同一个{@link FrameLuminanceSource}
+ * 指向新的一帧，这里只需要把绑定在它上面的Binarizer原地重置，稳定扫描时每一帧几乎不产生垃圾。
+ * 换成另一个source时才会重新创建，所以每个会变的区域尺寸应该有自己的一个DecodeContext。
+ * 每种{@link BinarizerStrategy}各有一套，轮流使用不同的方式时也不会重新分配。
+ *
+ * 只在一个解码线程中使用，不需要同步。
+ */
+final class DecodeContext {
+
+  private final CancelToken cancelToken;
+  private FrameLuminanceSource source;
+  private LuminanceSource cancellableSource;
+  private BinarizerStrategy strategy;
+  private final ReusableBinarizer[] binarizers;
+  private final InvertedBinarizer[] invertedBinarizers;
+  private final RotatedBinarizer[] rotatedBinarizers;
+
+  DecodeContext(CancelToken cancelToken) {
+    this.cancelToken = cancelToken;
+    int count = BinarizerStrategy.values().length;
+    binarizers = new ReusableBinarizer[count];
+    invertedBinarizers = new InvertedBinarizer[count];
+    rotatedBinarizers = new RotatedBinarizer[count];
+  }
+
+  /**
+   * 换成source当前指向的一帧
+   *
+   * @param source 和上一帧是同一个对象时原地重置，否则重新创建所有结构
+   * @param strategy 这一帧使用的二值化方式
+   */
+  void setSource(FrameLuminanceSource source, BinarizerStrategy strategy) {
+    if (source != this.source) {
+      this.source = source;
+      //读取亮度数据时会检查是否已经取消
+      cancellableSource = new CancellableLuminanceSource(source, cancelToken);
+      for (int i = 0; i < binarizers.length; i++) {
+        binarizers[i] = null;
+        invertedBinarizers[i] = null;
+        rotatedBinarizers[i] = null;
+      }
+    }
+    this.strategy = strategy;
+    int i = strategy.ordinal();
+    if (binarizers[i] == null) {
+      binarizers[i] = strategy.create(cancellableSource, cancelToken);
+      return;
+    }
+    binarizers[i].reset();
+    if (invertedBinarizers[i] != null) {
+      invertedBinarizers[i].reset();
+    }
+    if (rotatedBinarizers[i] != null) {
+      rotatedBinarizers[i].reset();
+    }
+  }
+
+  FrameLuminanceSource getSource() {
+    return source;
+  }
+
+  /**
+   * @return 这一帧使用的二值化方式
+   */
+  BinarizerStrategy getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * @return 这一帧的Binarizer，正反两种极性和旋转后的尝试共用它算出来的BitMatrix
+   */
+  Binarizer getBinarizer() {
+    return binarizers[strategy.ordinal()];
+  }
+
+  /**
+   * @return 这一帧反色后的Binarizer
+   */
+  Binarizer getInvertedBinarizer() {
+    int i = strategy.ordinal();
+    if (invertedBinarizers[i] == null) {
+      invertedBinarizers[i] = new InvertedBinarizer(binarizers[i]);
+    }
+    return invertedBinarizers[i];
+  }
+
+  /**
+   * @return 这一帧顺时针旋转90度后的Binarizer
+   */
+  RotatedBinarizer getRotatedBinarizer() {
+    int i = strategy.ordinal();
+    if (rotatedBinarizers[i] == null) {
+      rotatedBinarizers[i] = new RotatedBinarizer(binarizers[i]);
+    }
+    return rotatedBinarizers[i];
+  }
+
+}
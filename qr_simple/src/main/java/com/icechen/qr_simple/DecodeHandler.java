@@ -23,33 +23,126 @@ import android.os.Looper;
 import android.os.Message;
 import android.util.Log;
 
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
 import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.MultiFormatReader;
-import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
 
 import java.io.ByteArrayOutputStream;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 
 public final class DecodeHandler extends Handler {
 
   private static final String TAG = DecodeHandler.class.getSimpleName();
 
-  private final CaptureActivity activity;
+  //每一帧的解码时间预算，超过以后放弃剩下的尝试，直接解码下一帧
+  private static final long FRAME_BUDGET_NANOS = 150L * 1000000L;
+  //切换到TRY_HARDER以后每一帧的预算
+  private static final long ESCALATED_FRAME_BUDGET_NANOS = 300L * 1000000L;
+  //比较慢的格式，在单独的慢通道中解码，见HeavyDecodeLane
+  private static final Set<BarcodeFormat> HEAVY_FORMATS = EnumSet.of(BarcodeFormat.PDF_417, BarcodeFormat.AZTEC);
+  //每隔几帧交给慢通道一帧
+  private static final int HEAVY_FRAME_INTERVAL = 3;
+
+  //以下四项每次扫描会话开始时由R.id.bind_session重新绑定，见DecodeSession
+  private DecodeSession session;
+  private ScanHost host;
+  private BinarizerSelector binarizerSelector;
+  private ResultPointCallback resultPointCallback;
+  //检测阶段交过来的帧，见DetectHandler
+  private final DecodePipeline pipeline;
+  //检测好的帧的整个扫描框和其中的候选区域，以及它们各自的可复用解码结构
+  private final FrameRegion region;
+  //常驻的取消标记，父标记是当前会话的标记
+  private final CancelToken cancelToken;
   private final MultiFormatReader multiFormatReader;
-  private boolean running = true;
+  //开启了TRY_HARDER的Reader，只在连续失败以后短暂使用，调用者已经指定了TRY_HARDER时为null
+  private final MultiFormatReader hardReader;
+  //解码PDF417和Aztec的慢通道，没有请求这两种格式或者只请求了这两种格式时为null
+  private final HeavyDecodeLane heavyLane;
+  private int framesSinceHeavy;
+  //正在解码的这一帧所属的一轮，见DecodeRound
+  private DecodeRound round;
+  private final EscalationPolicy escalationPolicy;
+  private final FrameFusion frameFusion;
+  //融合帧的可复用解码结构，预览帧的见FrameRegion
+  private final DecodeContext fusionContext;
+  private final YPlaneDownsampler downsampler;
+  //这一帧解码时是否找到过可能的结果点，只在解码线程中读写
+  private boolean foundResultPoint;
+  private final DecodeMetrics metrics;
+  //只识别一维码，用于旋转90度后的尝试，没有请求一维码时为null
+  private final MultiFormatReader rotatedReader;
+  //旋转后的宽度，即旋转前的高度，用于把结果点换算回去
+  private int rotatedWidth;
+  private final boolean invertScan;
+  //最近一次是反色解码成功的，下一帧就先尝试反色
+  private boolean invertedFirst;
+  //已经被新的DecodeHandler替换，处理完当前会话的R.id.quit以后释放，只在解码线程中读写
+  private boolean retired;
 
   private static final int  decode = 1;
   private static final int  quit = 2;
 
 
-  DecodeHandler(CaptureActivity activity, Map<DecodeHintType,Object> hints) {
+  /**
+   * @param looper 常驻解码线程的Looper，见{@link DecodeWorker}
+   * @param pipeline 和检测阶段之间的队列
+   * @param hints 解码指示，不含结果点回调
+   * @param invertScan 是否同时尝试反色
+   */
+  DecodeHandler(Looper looper, DecodePipeline pipeline, Map<DecodeHintType,Object> hints, boolean invertScan) {
+    super(looper);
+    this.pipeline = pipeline;
+    cancelToken = new CancelToken();
+    region = new FrameRegion(cancelToken);
+    hints = withCancellationCallback(hints);
+    //PDF417和Aztec在噪点多的画面上可能要几百毫秒，放到慢通道里，不拖慢其他格式
+    Map<DecodeHintType,Object> fastHints = hints;
+    HeavyDecodeLane theHeavyLane = null;
+    @SuppressWarnings("unchecked")
+    Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+    if (formats != null) {
+      Set<BarcodeFormat> fastFormats = EnumSet.noneOf(BarcodeFormat.class);
+      Set<BarcodeFormat> heavyFormats = EnumSet.noneOf(BarcodeFormat.class);
+      for (BarcodeFormat format : formats) {
+        (HEAVY_FORMATS.contains(format) ? heavyFormats : fastFormats).add(format);
+      }
+      if (!fastFormats.isEmpty() && !heavyFormats.isEmpty()) {
+        fastHints = withFormats(hints, fastFormats);
+        theHeavyLane = new HeavyDecodeLane(withFormats(hints, heavyFormats), invertScan);
+      }
+    }
+    heavyLane = theHeavyLane;
     multiFormatReader = new MultiFormatReader();
-    multiFormatReader.setHints(hints);
-    this.activity = activity;
+    multiFormatReader.setHints(fastHints);
+    if (hints.containsKey(DecodeHintType.TRY_HARDER)) {
+      hardReader = null;
+    } else {
+      Map<DecodeHintType,Object> hardHints = new EnumMap<>(DecodeHintType.class);
+      hardHints.putAll(fastHints);
+      hardHints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+      hardReader = new MultiFormatReader();
+      hardReader.setHints(hardHints);
+    }
+    escalationPolicy = new EscalationPolicy();
+    frameFusion = new FrameFusion();
+    fusionContext = new DecodeContext(cancelToken);
+    downsampler = new YPlaneDownsampler();
+    metrics = new DecodeMetrics();
+    rotatedReader = buildRotatedReader(hints);
+    this.invertScan = invertScan;
   }
 
   /**
@@ -58,55 +151,199 @@ public final class DecodeHandler extends Handler {
    */
   @Override
   public void handleMessage(Message message) {
-    if (!running) {
+    if (message.what == R.id.bind_session) {
+      bind((DecodeSession) message.obj);
+
+    } else if (session == null) {
+      //会话已经结束，或者这是已经被替换掉的Handler。不从队列里取帧，留给下一次绑定的会话
       return;
-    }
-    if (message.what == R.id.decode) {/**
-     * 解码，将会在{@link CaptureActivityHandler}中进行
-     * 其中，byte[]来自于{@link PreviweCallback}
+
+    } else if (message.what == R.id.decode) {/**
+     * 解码检测阶段交过来的最新一帧，结果在{@link CaptureActivityHandler}中处理
      */
-      decode((byte[]) message.obj, message.arg1, message.arg2);
+      DetectedFrame detected = pipeline.takeNewest();
+      if (detected != null) {
+        try {
+          decode(detected);
+        } catch (DecodeCancelledException dce) {
+          //会话已经结束，或者慢通道抢先发布了结果
+          Log.d(TAG, "Decode cancelled");
+        } finally {
+          //被取消时可能没走到清除截止时间的地方
+          cancelToken.clearDeadline();
+          round = null;
+          pipeline.recycle(detected);
+        }
+      }
+      if (pipeline.onDecodeFinished()) {
+        obtainMessage(R.id.decode).sendToTarget();
+      }
+
+    } else if (message.what == R.id.quit && message.obj == session) {
+      binarizerSelector.save();
+      Log.i(TAG, metrics.toString());
+      Log.i(TAG, pipeline.toString());
+      if (heavyLane != null) {
+        heavyLane.logAndReset();
+      }
+      DecodeSession finished = session;
+      session = null;
+      host = null;
+      binarizerSelector = null;
+      resultPointCallback = null;
+      cancelToken.setParent(null);
+      //线程不退出，留给下一次扫描
+      DecodeWorker.get(finished.getHost().getContext()).onSessionFinished();
+      finished.onFinished();
+      if (retired) {
+        release();
+      }
+
+    }
+  }
+
+  /**
+   * 在主线程中调用，解码配置变了，已经换成了新的DecodeHandler。
+   * 当前会话可能还在解码，或者还没有处理R.id.quit，所以到解码线程中等它处理完R.id.quit以后再释放
+   */
+  void retire() {
+    post(new Runnable() {
+      @Override
+      public void run() {
+        if (session == null) {
+          release();
+        } else {
+          retired = true;
+        }
+      }
+    });
+  }
 
-    } else if (message.what == R.id.quit) {
-      running = false;
-      Looper.myLooper().quit();
+  /**
+   * 解码线程被释放时调用，结束慢通道的线程
+   */
+  void release() {
+    if (heavyLane != null) {
+      heavyLane.release();
+    }
+  }
 
+  /**
+   * 开始新的扫描会话，Reader和缓冲区保留，和画面内容有关的状态都清掉
+   */
+  private void bind(DecodeSession newSession) {
+    session = newSession;
+    host = newSession.getHost();
+    binarizerSelector = newSession.getBinarizerSelector();
+    resultPointCallback = newSession.getResultPointCallback();
+    cancelToken.setParent(newSession.getCancelToken());
+    cancelToken.clearDeadline();
+    escalationPolicy.reset();
+    frameFusion.reset();
+    framesSinceHeavy = 0;
+    invertedFirst = false;
+    metrics.reset();
+    pipeline.reset();
+    //没有会话时不取帧，唤醒标记可能还被之前的消息占着，队列里有帧就由这次会话接着处理
+    if (pipeline.onDecodeFinished()) {
+      obtainMessage(R.id.decode).sendToTarget();
     }
   }
 
   /**
-   * 处理扫描到的图像数据
+   * 解码检测好的一帧，只解码候选区域，多帧融合和慢通道使用整个扫描框
    *
-   * @param data   byte[]来自于{@link com.icechen.qr_simple.camera.PreviewCallback}
-   * @param width  The width of the preview frame.
-   * @param height The height of the preview frame.
+   * @param detected 检测阶段交过来的帧，见{@link DetectHandler}
    */
-  private void decode(byte[] data, int width, int height) {
+  private void decode(DetectedFrame detected) {
     long start = System.currentTimeMillis();
+    //检测时所属的那一轮，重新开始以后上一轮剩下的帧不会再发布结果
+    round = detected.getRound();
+    cancelToken.setParent(round.getCancelToken());
+    //已经取消了，或者这一轮已经有了结果，这一帧都不用解码了
+    cancelToken.throwIfCancelled();
     //定义一个Result对象
     Result rawResult = null;
 
-    //获得一个二位色差明亮的资源
-    PlanarYUVLuminanceSource source = activity.getCameraManager().buildLuminanceSource(data, width, height);
-    if (source != null) {
-      //通过source可以得到一个Bitmap
-      BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+    //整个扫描框，尺寸不变时复用上一帧的对象
+    FrameLuminanceSource source = region.setFrame(detected);
+    {
+      foundResultPoint = false;
+      //画面没有变化、没有候选区域的帧已经在检测阶段跳过了
+      CandidateDetector.Cue cue = detected.getCue();
+      //按这台设备上的识别率和耗时选择二值化方式
+      BinarizerStrategy strategy = binarizerSelector.select();
+      long decodeStart = System.nanoTime();
+      //连续失败多帧以后，短暂地切换到TRY_HARDER
+      boolean escalated = hardReader != null && escalationPolicy.isEscalated();
+      MultiFormatReader reader = escalated ? hardReader : multiFormatReader;
+      DecodeContext frameContext = region.selectRegion(detected, strategy);
+      long deadlineNanos = decodeStart + (escalated ? ESCALATED_FRAME_BUDGET_NANOS : FRAME_BUDGET_NANOS);
+      boolean overBudget = false;
       try {
-        //用上面这个Bitmap获得一个Result对象，不用管怎么获得的
-        rawResult = multiFormatReader.decodeWithState(bitmap);
-      } catch (ReaderException re) {
-        // continue
-      } finally {
-        multiFormatReader.reset();
+        //第一种极性的尝试总是做完，否则慢的设备上可能每一帧都解不完；
+        //之后的尝试受时间预算限制，超过时取消标记会在下一个检查点抛出异常，剩下的尝试都放弃
+        rawResult = decodePolarities(reader, frameContext, deadlineNanos);
+        if (rawResult == null && rotatedReader != null && cue != CandidateDetector.Cue.TWO_D &&
+            host.getCameraManager().getCWNeededRotation() % 180 != 0) {
+          //屏幕和相机的方向垂直时，和屏幕对齐的一维码在相机画面里是竖着的，旋转后再试一次
+          cancelToken.throwIfCancelled();
+          rawResult = decodeRotated(frameContext);
+        }
+      } catch (DecodeCancelledException dce) {
+        rethrowIfCancelled(dce);
+        overBudget = true;
+      }
+      //多帧融合的结果不计入这种方式的统计
+      binarizerSelector.onFrameDecoded(strategy, rawResult != null, foundResultPoint, System.nanoTime() - decodeStart);
+      if (rawResult == null && heavyLane != null && ++framesSinceHeavy >= HEAVY_FRAME_INTERVAL &&
+          heavyLane.offer(source, strategy, round, session)) {
+        //慢通道还在解上一帧时不交，下一帧再试
+        framesSinceHeavy = 0;
+      }
+      if (rawResult == null && !overBudget) {
+        //单帧一直解码失败时，把最近几帧对齐后融合成一帧再试
+        frameFusion.add(source);
+        if (frameFusion.isReady()) {
+          try {
+            //融合帧是整个扫描框
+            region.useWholeFrame();
+            fusionContext.setSource(frameFusion.fuse(), strategy);
+            rawResult = decodePolarities(reader, fusionContext, deadlineNanos);
+            if (rawResult != null) {
+              Log.d(TAG, "Decoded from fused frames");
+              source = fusionContext.getSource();
+            }
+          } catch (DecodeCancelledException dce) {
+            rethrowIfCancelled(dce);
+            overBudget = true;
+          }
+        }
+      }
+      cancelToken.clearDeadline();
+      if (rawResult != null) {
+        frameFusion.reset();
+        region.toFramePoints(rawResult);
       }
+      metrics.onFrameDecoded(rawResult != null, overBudget, System.nanoTime() - decodeStart);
+      escalationPolicy.onFrameDecoded(rawResult != null);
+      if (foundResultPoint) {
+        host.getCameraManager().onScanActivity();
+      }
+      //检测阶段据此跳过画面没有变化的帧
+      pipeline.onFrameDecoded(rawResult != null);
     }
 
     /**
-     * 获得Activity的Handler，其实就是{@link CaptureActivityHandler}
+     * 获得宿主的Handler，其实就是{@link CaptureActivityHandler}
      * 所以结果就在CaptureActivityHandler中处理
      */
-    Handler handler = activity.getHandler();
-    if (rawResult != null) {  //永远为空
+    Handler handler = host.getCaptureHandler();
+    if (rawResult != null && !round.claim()) {
+      //慢通道抢先发布了结果
+      rawResult = null;
+    }
+    if (rawResult != null) {
       // Don't log the barcode contents for security.
       long end = System.currentTimeMillis();
       Log.d(TAG, "Found barcode in " + (end - start) + " ms");
@@ -118,38 +355,206 @@ public final class DecodeHandler extends Handler {
         //new一个Bundle
         Bundle bundle = new Bundle();
         //
-        bundleThumbnail(source, bundle);
+        bundleThumbnail(downsampler, source, bundle);
         message.setData(bundle);
         message.sendToTarget();
       }
+    }
+  }
+
+  /**
+   * 区分超过时间预算和被取消：只是超过预算时直接返回，这一轮或者会话被取消时继续抛出
+   */
+  private void rethrowIfCancelled(DecodeCancelledException dce) {
+    if (!cancelToken.isDeadlineExceeded() || round.getCancelToken().isCancelled()) {
+      throw dce;
+    }
+  }
+
+  /**
+   * 用正常和反色两种极性解码同一帧，先尝试最近一次成功的那种极性。
+   * 反色不会重新二值化，而是直接把正常极性的BitMatrix取反，见{@link InvertedBinarizer}
+   *
+   * @param reader 用来解码的Reader
+   * @param context 这一帧的解码结构
+   * @param deadlineNanos 这一帧的截止时间，第一种极性解完以后才开始生效，另一种极性受它限制
+   * @return 解码结果，失败时为null
+   */
+  private Result decodePolarities(MultiFormatReader reader, DecodeContext context, long deadlineNanos) {
+    Binarizer binarizer = context.getBinarizer();
+    Binarizer first = binarizer;
+    Binarizer second = null;
+    if (invertScan) {
+      Binarizer inverted = context.getInvertedBinarizer();
+      first = invertedFirst ? inverted : binarizer;
+      second = invertedFirst ? binarizer : inverted;
+    }
+    Result result = decodeBitmap(reader, new BinaryBitmap(first));
+    //只有第一种极性不受时间预算限制
+    cancelToken.setDeadline(deadlineNanos);
+    if (result == null && second != null) {
+      cancelToken.throwIfCancelled();
+      result = decodeBitmap(reader, new BinaryBitmap(second));
+      if (result != null) {
+        //另一种极性赢了，下一帧先尝试它
+        invertedFirst = !invertedFirst;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 把这一帧旋转90度后再用一维码的Reader解码一次。
+   * 旋转的是已经算好的BitMatrix，不会重新二值化，见{@link RotatedBinarizer}
+   *
+   * @param context 这一帧的解码结构
+   * @return 解码结果，坐标已经换算回旋转前的画面，失败时为null
+   */
+  private Result decodeRotated(DecodeContext context) {
+    RotatedBinarizer rotated = context.getRotatedBinarizer();
+    rotatedWidth = rotated.getWidth();
+    Result result = decodeBitmap(rotatedReader, new BinaryBitmap(rotated));
+    if (result == null) {
+      return null;
+    }
+    ResultPoint[] points = result.getResultPoints();
+    if (points != null) {
+      for (int i = 0; i < points.length; i++) {
+        if (points[i] != null) {
+          points[i] = toSourcePoint(points[i]);
+        }
+      }
+    }
+    Map<ResultMetadataType,?> metadata = result.getResultMetadata();
+    int orientation = 90;
+    if (metadata != null && metadata.containsKey(ResultMetadataType.ORIENTATION)) {
+      orientation = (orientation + (Integer) metadata.get(ResultMetadataType.ORIENTATION)) % 360;
+    }
+    result.putMetadata(ResultMetadataType.ORIENTATION, orientation);
+    return result;
+  }
+
+  /**
+   * 把旋转后画面中的点换算回旋转前的画面
+   */
+  private ResultPoint toSourcePoint(ResultPoint point) {
+    return new ResultPoint(point.getY(), rotatedWidth - 1 - point.getX());
+  }
+
+  /**
+   * 用{@link MultiFormatReader}解码一个BinaryBitmap
+   *
+   * @return 解码结果，失败时为null
+   */
+  private static Result decodeBitmap(MultiFormatReader reader, BinaryBitmap bitmap) {
+    try {
+      //用上面这个Bitmap获得一个Result对象，不用管怎么获得的
+      return reader.decodeWithState(bitmap);
+    } catch (ReaderException re) {
+      return null;
+    } finally {
+      reader.reset();
+    }
+  }
+
+  /**
+   * 替换解码指示中的结果点回调，每找到一个可能的结果点都检查一次是否已经取消，并记下这一帧找到过结果点，
+   * 再转发给当前会话的回调。二维码的定位阶段会频繁调用它，是ZXing内部为数不多可以插手的地方。
+   *
+   * @param hints 解码指示
+   * @return 新的解码指示
+   */
+  private Map<DecodeHintType,Object> withCancellationCallback(Map<DecodeHintType,Object> hints) {
+    Map<DecodeHintType,Object> cancellableHints = new EnumMap<>(DecodeHintType.class);
+    cancellableHints.putAll(hints);
+    cancellableHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, new ResultPointCallback() {
+      @Override
+      public void foundPossibleResultPoint(ResultPoint point) {
+        cancelToken.throwIfCancelled();
+        foundResultPoint = true;
+        //换算回整个扫描框，再转发给当前会话的回调
+        ResultPointCallback callback = resultPointCallback;
+        if (callback != null) {
+          callback.foundPossibleResultPoint(region.toFramePoint(point));
+        }
+      }
+    });
+    return cancellableHints;
+  }
+
+  /**
+   * 复制解码指示，只保留指定的格式
+   */
+  private static Map<DecodeHintType,Object> withFormats(Map<DecodeHintType,Object> hints,
+                                                        Set<BarcodeFormat> formats) {
+    Map<DecodeHintType,Object> formatHints = new EnumMap<>(DecodeHintType.class);
+    formatHints.putAll(hints);
+    formatHints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+    return formatHints;
+  }
+
+  /**
+   * 创建只识别一维码的Reader，用于旋转后的尝试
+   *
+   * @param hints 解码指示
+   * @return 没有请求任何一维码格式时返回null
+   */
+  private MultiFormatReader buildRotatedReader(Map<DecodeHintType,Object> hints) {
+    @SuppressWarnings("unchecked")
+    Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+    Set<BarcodeFormat> oneDFormats = EnumSet.noneOf(BarcodeFormat.class);
+    if (formats == null) {
+      oneDFormats.addAll(DecodeFormatManager.ONE_D_FORMATS);
     } else {
-      if (handler != null) {
-        //发送解码失败
-        Message message = Message.obtain(handler, R.id.decode_failed);
-        message.sendToTarget();
+      for (BarcodeFormat format : formats) {
+        if (DecodeFormatManager.ONE_D_FORMATS.contains(format)) {
+          oneDFormats.add(format);
+        }
       }
     }
+    if (oneDFormats.isEmpty()) {
+      return null;
+    }
+    Map<DecodeHintType,Object> rotatedHints = new EnumMap<>(DecodeHintType.class);
+    rotatedHints.putAll(hints);
+    rotatedHints.put(DecodeHintType.POSSIBLE_FORMATS, oneDFormats);
+    final ResultPointCallback callback =
+        (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+    if (callback != null) {
+      rotatedHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, new ResultPointCallback() {
+        @Override
+        public void foundPossibleResultPoint(ResultPoint point) {
+          callback.foundPossibleResultPoint(toSourcePoint(point));
+        }
+      });
+    }
+    MultiFormatReader reader = new MultiFormatReader();
+    reader.setHints(rotatedHints);
+    return reader;
   }
 
   /**
+   * 生成结果的略缩图，快慢两个通道共用，各自传入自己的downsampler
    *
+   * @param downsampler 调用者线程的{@link YPlaneDownsampler}
    * @param source
    * @param bundle
    */
-  private static void bundleThumbnail(PlanarYUVLuminanceSource source, Bundle bundle) {
-    //从PlanarYUVLuminanceSource对象中获得略缩图的像素点
-    int[] pixels = source.renderThumbnail();
+  static void bundleThumbnail(YPlaneDownsampler downsampler, FrameLuminanceSource source, Bundle bundle) {
+    //一遍扫描生成略缩图和缩小的亮度数据，像素点写在复用的数组里
+    downsampler.downsample(source);
+    int[] pixels = downsampler.getThumbnail();
     //获得略缩图的尺寸
-    int width = source.getThumbnailWidth();
-    int height = source.getThumbnailHeight();
+    int width = downsampler.getThumbnailWidth();
+    int height = downsampler.getThumbnailHeight();
 
     //使用略缩图的像素创建Bitmap
     Bitmap bitmap = Bitmap.createBitmap(pixels, 0, width, width, height, Bitmap.Config.ARGB_8888);
     ByteArrayOutputStream out = new ByteArrayOutputStream();
     //把Bitmap转换成byte[]
     bitmap.compress(Bitmap.CompressFormat.JPEG, 50, out);
-    bundle.putByteArray(DecodeThread.BARCODE_BITMAP, out.toByteArray());
-    bundle.putFloat(DecodeThread.BARCODE_SCALED_FACTOR, (float) width / source.getWidth());
+    bundle.putByteArray(DecodeSession.BARCODE_BITMAP, out.toByteArray());
+    bundle.putFloat(DecodeSession.BARCODE_SCALED_FACTOR, (float) width / source.getWidth());
   }
 
 }
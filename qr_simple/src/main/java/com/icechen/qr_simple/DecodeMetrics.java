@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import java.util.Locale;
+
+/**
+ * 一次扫描会话的解码统计，会话结束时写到日志里。
+ *
+ * 只在解码线程中使用，不需要同步。
+ */
+final class DecodeMetrics {
+
+  private int decodedFrames;
+  private int foundFrames;
+  private int overBudgetFrames;
+  private long startNanos = System.nanoTime();
+  private long totalDecodeNanos;
+  private long maxDecodeNanos;
+
+  void reset() {
+    decodedFrames = 0;
+    foundFrames = 0;
+    overBudgetFrames = 0;
+    startNanos = System.nanoTime();
+    totalDecodeNanos = 0L;
+    maxDecodeNanos = 0L;
+  }
+
+  /**
+   * 解码了一帧
+   *
+   * @param found 是否找到了条码
+   * @param overBudget 是否因为超过时间预算放弃了剩下的尝试
+   * @param elapsedNanos 这一帧的解码时间
+   */
+  void onFrameDecoded(boolean found, boolean overBudget, long elapsedNanos) {
+    decodedFrames++;
+    if (found) {
+      foundFrames++;
+    }
+    if (overBudget) {
+      overBudgetFrames++;
+    }
+    totalDecodeNanos += elapsedNanos;
+    maxDecodeNanos = Math.max(maxDecodeNanos, elapsedNanos);
+  }
+
+  int getDecodedFrames() {
+    return decodedFrames;
+  }
+
+  int getOverBudgetFrames() {
+    return overBudgetFrames;
+  }
+
+  @Override
+  public String toString() {
+    long averageMs = decodedFrames == 0 ? 0L : totalDecodeNanos / decodedFrames / 1000000L;
+    //跳过的帧在检测阶段统计，见DecodePipeline
+    long elapsedNanos = Math.max(1L, System.nanoTime() - startNanos);
+    float fps = decodedFrames * 1.0e9f / elapsedNanos;
+    return "Decoded " + decodedFrames + " frames (" + foundFrames + " found, " + overBudgetFrames +
+        " over budget), average " + averageMs + " ms, max " + maxDecodeNanos / 1000000L + " ms, " +
+        String.format(Locale.US, "%.1f", fps) + " fps";
+  }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 检测阶段和解码阶段之间的有界队列，以及两个阶段的统计。
+ *
+ * 检测线程用{@link #publish}放入检测好的帧，队列满时丢掉最旧的一帧；解码线程用{@link #takeNewest()}取出最新的一帧，
+ * 更旧的帧直接丢掉。两个阶段在不同的线程中同时运行：解码一帧的同时，检测线程已经在处理下一帧。
+ * 解码线程只在空闲时被唤醒一次，忙的时候检测线程不发消息，见{@link #onDecodeFinished()}。
+ * 解码线程把每一帧的结果写回来，检测线程据此跳过画面没有变化的帧，见{@link #isLastDecodeFailed()}。
+ */
+final class DecodePipeline {
+
+  static final int QUEUE_CAPACITY = 2;
+
+  private final ArrayBlockingQueue<DetectedFrame> queue;
+  //可以复用的帧，队列满、解码线程和检测线程各拿着一帧时也够用
+  private final ArrayBlockingQueue<DetectedFrame> free;
+  private final AtomicBoolean decodeScheduled;
+  private final AtomicInteger detectedFrames;
+  private final AtomicInteger skippedFrames;
+  private final AtomicInteger emptyFrames;
+  private final AtomicInteger publishedFrames;
+  private final AtomicInteger droppedFrames;
+  private final AtomicInteger takenFrames;
+  private final AtomicLong detectNanos;
+  private final AtomicLong waitNanos;
+  //上一次解码的帧是否失败，解码线程写，检测线程读
+  private volatile boolean lastDecodeFailed;
+
+  DecodePipeline() {
+    queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    free = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 2);
+    for (int i = 0; i < QUEUE_CAPACITY + 2; i++) {
+      free.add(new DetectedFrame());
+    }
+    decodeScheduled = new AtomicBoolean();
+    detectedFrames = new AtomicInteger();
+    skippedFrames = new AtomicInteger();
+    emptyFrames = new AtomicInteger();
+    publishedFrames = new AtomicInteger();
+    droppedFrames = new AtomicInteger();
+    takenFrames = new AtomicInteger();
+    detectNanos = new AtomicLong();
+    waitNanos = new AtomicLong();
+  }
+
+  /**
+   * 检测线程取一个空闲的帧
+   */
+  DetectedFrame obtain() {
+    DetectedFrame frame = free.poll();
+    return frame != null ? frame : new DetectedFrame();
+  }
+
+  /**
+   * 检测线程放入检测好的一帧，队列满时丢掉最旧的一帧
+   *
+   * @param frame 检测好的帧
+   * @param elapsedNanos 检测这一帧用的时间
+   * @return 解码线程空闲，需要唤醒它时返回true
+   */
+  boolean publish(DetectedFrame frame, long elapsedNanos) {
+    onFrameDetected(elapsedNanos);
+    publishedFrames.incrementAndGet();
+    frame.queuedNanos = System.nanoTime();
+    while (!queue.offer(frame)) {
+      DetectedFrame oldest = queue.poll();
+      if (oldest != null) {
+        droppedFrames.incrementAndGet();
+        recycle(oldest);
+      }
+    }
+    return decodeScheduled.compareAndSet(false, true);
+  }
+
+  /**
+   * 检测线程跳过了画面没有变化的一帧
+   */
+  void onFrameSkipped(long elapsedNanos) {
+    onFrameDetected(elapsedNanos);
+    skippedFrames.incrementAndGet();
+  }
+
+  /**
+   * 检测线程跳过了没有候选区域的一帧
+   */
+  void onFrameEmpty(long elapsedNanos) {
+    onFrameDetected(elapsedNanos);
+    emptyFrames.incrementAndGet();
+  }
+
+  private void onFrameDetected(long elapsedNanos) {
+    detectedFrames.incrementAndGet();
+    detectNanos.addAndGet(elapsedNanos);
+  }
+
+  /**
+   * 解码线程取出最新的一帧，更旧的帧直接回收
+   *
+   * @return 队列为空时返回null
+   */
+  DetectedFrame takeNewest() {
+    DetectedFrame newest = null;
+    DetectedFrame frame;
+    while ((frame = queue.poll()) != null) {
+      if (newest != null) {
+        droppedFrames.incrementAndGet();
+        recycle(newest);
+      }
+      newest = frame;
+    }
+    if (newest != null) {
+      takenFrames.incrementAndGet();
+      waitNanos.addAndGet(System.nanoTime() - newest.queuedNanos);
+    }
+    return newest;
+  }
+
+  /**
+   * 解码完以后把帧还回来
+   */
+  void recycle(DetectedFrame frame) {
+    frame.clear();
+    free.offer(frame);
+  }
+
+  /**
+   * 解码线程处理完唤醒消息以后调用
+   *
+   * @return 期间又有新帧放入，需要再唤醒一次时返回true
+   */
+  boolean onDecodeFinished() {
+    decodeScheduled.set(false);
+    return !queue.isEmpty() && decodeScheduled.compareAndSet(false, true);
+  }
+
+  /**
+   * 解码线程解码完一帧以后调用
+   *
+   * @param found 是否找到了条码
+   */
+  void onFrameDecoded(boolean found) {
+    lastDecodeFailed = !found;
+  }
+
+  /**
+   * @return 上一次解码的帧是否失败，画面没有变化时再解码一次也是失败
+   */
+  boolean isLastDecodeFailed() {
+    return lastDecodeFailed;
+  }
+
+  /**
+   * 扫描会话开始时清零统计和上一帧的结果
+   */
+  void reset() {
+    lastDecodeFailed = false;
+    detectedFrames.set(0);
+    skippedFrames.set(0);
+    emptyFrames.set(0);
+    publishedFrames.set(0);
+    droppedFrames.set(0);
+    takenFrames.set(0);
+    detectNanos.set(0L);
+    waitNanos.set(0L);
+  }
+
+  int getDetectedFrames() {
+    return detectedFrames.get();
+  }
+
+  int getSkippedFrames() {
+    return skippedFrames.get();
+  }
+
+  int getEmptyFrames() {
+    return emptyFrames.get();
+  }
+
+  int getPublishedFrames() {
+    return publishedFrames.get();
+  }
+
+  int getDroppedFrames() {
+    return droppedFrames.get();
+  }
+
+  @Override
+  public String toString() {
+    int detected = detectedFrames.get();
+    int taken = takenFrames.get();
+    long averageDetectUs = detected == 0 ? 0L : detectNanos.get() / detected / 1000L;
+    long averageWaitUs = taken == 0 ? 0L : waitNanos.get() / taken / 1000L;
+    return "Detected " + detected + " frames (average " + averageDetectUs + " us), skipped " + skippedFrames.get() +
+        " unchanged and " + emptyFrames.get() + " empty, handed over " + publishedFrames.get() + ", dropped " +
+        droppedFrames.get() + " in queue, average wait " + averageWaitUs + " us";
+  }
+
+}
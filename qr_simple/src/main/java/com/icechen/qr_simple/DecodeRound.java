@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一轮扫描：从开始解码到有一个解码通道发布结果为止。
+ *
+ * 快通道（{@link DecodeHandler}）和慢通道（{@link HeavyDecodeLane}）同时解码同一轮的帧，
+ * 先调用{@link #claim()}成功的通道发布结果，同时取消这一轮的标记，另一个通道在下一个检查点退出
+ * （PDF417的定位阶段没有检查点，这时要等它解完，它的结果在claim时被拒绝）。
+ * 两个通道各自的取消标记都以这一轮的标记为父标记，而这一轮的标记又以会话的标记为父标记。
+ */
+final class DecodeRound {
+
+  private final CancelToken cancelToken;
+  private final AtomicBoolean finished;
+
+  /**
+   * @param sessionToken 这次扫描会话的取消标记
+   */
+  DecodeRound(CancelToken sessionToken) {
+    cancelToken = new CancelToken(sessionToken);
+    finished = new AtomicBoolean();
+  }
+
+  /**
+   * @return 这一轮的取消标记，发布结果或者这一轮结束时被取消
+   */
+  CancelToken getCancelToken() {
+    return cancelToken;
+  }
+
+  /**
+   * 找到结果的通道调用，只有第一个调用的通道会成功，成功时取消其他通道。
+   * 这一轮或者会话已经被取消时总是失败，会话结束前开始解的帧不会把结果发布出去
+   *
+   * @return 是否可以发布结果
+   */
+  boolean claim() {
+    if (cancelToken.isCancelled()) {
+      return false;
+    }
+    if (finished.compareAndSet(false, true)) {
+      cancelToken.cancel();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * 开始下一轮时结束这一轮，之后这一轮的结果都不再发布
+   */
+  void close() {
+    finished.set(true);
+    cancelToken.cancel();
+  }
+
+  /**
+   * @return 是否已经有通道发布了结果，或者这一轮已经结束
+   */
+  boolean isFinished() {
+    return finished.get();
+  }
+
+}
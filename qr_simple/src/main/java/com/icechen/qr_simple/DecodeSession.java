@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2008 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.icechen.qr_simple;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Message;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ResultPointCallback;
+import com.icechen.qr_simple.camera.FrontLightMode;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次扫描会话的解码配置。
+ *
+ * 检测和解码在常驻的{@link DecodeWorker}线程中进行，它们的Reader和缓冲区在多次扫描之间复用；
+ * 这里只保存这次扫描特有的东西：宿主、偏好设置、结果点回调和取消标记。
+ */
+final class DecodeSession {
+
+  public static final String BARCODE_BITMAP = "barcode_bitmap";
+  public static final String BARCODE_SCALED_FACTOR = "barcode_scaled_factor";
+
+  private final ScanHost host;
+  private final Map<DecodeHintType,Object> hints;
+  private final boolean invertScan;
+  private final BinarizerSelector binarizerSelector;
+  private final ExposureController exposureController;
+  private final CancelToken cancelToken;
+  private final ResultPointCallback resultPointCallback;
+  private final CountDownLatch finishedLatch;
+  //当前这一轮扫描，每次发布结果以后重新开始时换成新的一轮
+  private volatile DecodeRound round;
+  //接收预览帧的检测阶段和真正解码的解码阶段
+  private DetectHandler detectHandler;
+  private DecodeHandler decodeHandler;
+
+  DecodeSession(ScanHost host,
+                Collection<BarcodeFormat> decodeFormats,
+                Map<DecodeHintType,?> baseHints,
+                String characterSet,
+                ResultPointCallback resultPointCallback) {
+
+    this.host = host;
+    this.resultPointCallback = resultPointCallback;
+    cancelToken = new CancelToken();
+    round = new DecodeRound(cancelToken);
+    finishedLatch = new CountDownLatch(1);
+
+    hints = new EnumMap<>(DecodeHintType.class);
+    if (baseHints != null) {
+      hints.putAll(baseHints);
+    }
+
+    // The prefs can't change while the session is running, so pick them up once here.
+    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(host.getContext());
+    invertScan = prefs.getBoolean(PreferencesActivity.KEY_INVERT_SCAN, false);
+    binarizerSelector = new BinarizerSelector(
+        host.getContext().getSharedPreferences(BinarizerSelector.PREFS_NAME, Context.MODE_PRIVATE),
+        BinarizerStrategy.parse(prefs.getString(PreferencesActivity.KEY_BINARIZER, null)));
+    exposureController = new ExposureController(
+        FrontLightMode.readPref(prefs) == FrontLightMode.AUTO,
+        !prefs.getBoolean(PreferencesActivity.KEY_DISABLE_EXPOSURE, true));
+    if (decodeFormats == null || decodeFormats.isEmpty()) {
+      decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
+      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_1D_PRODUCT, true)) {
+        decodeFormats.addAll(DecodeFormatManager.PRODUCT_FORMATS);
+      }
+      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_1D_INDUSTRIAL, true)) {
+        decodeFormats.addAll(DecodeFormatManager.INDUSTRIAL_FORMATS);
+      }
+      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_QR, true)) {
+        decodeFormats.addAll(DecodeFormatManager.QR_CODE_FORMATS);
+      }
+      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_DATA_MATRIX, true)) {
+        decodeFormats.addAll(DecodeFormatManager.DATA_MATRIX_FORMATS);
+      }
+      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_AZTEC, false)) {
+        decodeFormats.addAll(DecodeFormatManager.AZTEC_FORMATS);
+      }
+      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_PDF417, false)) {
+        decodeFormats.addAll(DecodeFormatManager.PDF417_FORMATS);
+      }
+    }
+    hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
+
+    if (characterSet != null) {
+      hints.put(DecodeHintType.CHARACTER_SET, characterSet);
+    }
+    //结果点回调每次扫描都不同，不放在解码指示里，这样解码指示相同的会话可以复用同一套Reader
+    Log.i("DecodeSession", "Hints: " + hints);
+  }
+
+  /**
+   * 绑定到常驻的检测和解码线程，开始接收预览帧
+   */
+  void start() {
+    DecodeWorker.get(host.getContext()).bind(this);
+  }
+
+  /**
+   * 在{@link DecodeWorker#bind}中、发送R.id.bind_session之前调用
+   */
+  void setHandlers(DetectHandler detectHandler, DecodeHandler decodeHandler) {
+    this.detectHandler = detectHandler;
+    this.decodeHandler = decodeHandler;
+  }
+
+  /**
+   * 获得接收预览帧的{@link DetectHandler}对象
+   * @return
+   */
+  Handler getHandler() {
+    return detectHandler;
+  }
+
+  Handler getDecodeHandler() {
+    return decodeHandler;
+  }
+
+  ScanHost getHost() {
+    return host;
+  }
+
+  Map<DecodeHintType,Object> getHints() {
+    return hints;
+  }
+
+  boolean isInvertScan() {
+    return invertScan;
+  }
+
+  BinarizerSelector getBinarizerSelector() {
+    return binarizerSelector;
+  }
+
+  ExposureController getExposureController() {
+    return exposureController;
+  }
+
+  CancelToken getCancelToken() {
+    return cancelToken;
+  }
+
+  ResultPointCallback getResultPointCallback() {
+    return resultPointCallback;
+  }
+
+  DecodeRound getRound() {
+    return round;
+  }
+
+  /**
+   * 处理完上一个结果、重新开始解码时在主线程中调用。上一轮还在解码的通道会被取消，它们的结果不再发布
+   */
+  void nextRound() {
+    DecodeRound finished = round;
+    round = new DecodeRound(cancelToken);
+    finished.close();
+  }
+
+  /**
+   * 取消正在进行的解码，可以在任何线程中调用。
+   * 解码线程会在下一个检查点退出当前帧，并丢弃之后收到的帧
+   */
+  void cancel() {
+    cancelToken.cancel();
+  }
+
+  /**
+   * 取消并结束这次会话，等解码线程处理完这次会话剩下的消息再返回
+   *
+   * @param timeoutMs 最多等待的时间
+   */
+  void quit(long timeoutMs) {
+    cancel();
+    Message.obtain(detectHandler, R.id.quit, this).sendToTarget();
+    Message.obtain(decodeHandler, R.id.quit, this).sendToTarget();
+    try {
+      finishedLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      // continue
+    }
+  }
+
+  /**
+   * 解码线程处理完这次会话的R.id.quit以后调用，检测线程不用等
+   */
+  void onFinished() {
+    finishedLatch.countDown();
+  }
+
+}
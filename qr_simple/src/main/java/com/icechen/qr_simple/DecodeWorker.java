@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.google.zxing.DecodeHintType;
+
+import java.util.Map;
+
+/**
+ * 常驻的解码线程。
+ *
+ * 以前每次扫描都要新建一个解码线程、Looper和整套Reader，扫描结束再销毁。现在线程和{@link DecodeHandler}
+ * 在第一次扫描时创建，之后的扫描只要解码指示和反色设置相同，就直接复用上一次的Reader、Binarizer和缓冲区，
+ * 每次扫描只是用{@link DecodeSession}重新绑定宿主和取消标记。
+ *
+ * 解码分成两个阶段，各用一个线程：检测线程（{@link DetectHandler}）接收预览帧并找出候选区域，
+ * 解码线程（{@link DecodeHandler}）只解码候选区域，两者之间是{@link DecodePipeline}。
+ * 请求了PDF417或Aztec时，{@link DecodeHandler}另外有一个低优先级的慢通道，见{@link HeavyDecodeLane}。
+ *
+ * 系统内存紧张（{@link ComponentCallbacks2#onTrimMemory}）时，
+ * 没有正在进行的扫描就立刻释放线程和缓存，否则等这次扫描结束后释放。
+ */
+final class DecodeWorker implements ComponentCallbacks2 {
+
+  private static final String TAG = DecodeWorker.class.getSimpleName();
+
+  private static DecodeWorker instance;
+
+  private HandlerThread thread;
+  private HandlerThread detectThread;
+  private DecodePipeline pipeline;
+  private DetectHandler detectHandler;
+  private DecodeHandler handler;
+  //handler是用这两项配置创建的
+  private Map<DecodeHintType,Object> handlerHints;
+  private boolean handlerInvertScan;
+  private int activeSessions;
+  private boolean releasePending;
+
+  private DecodeWorker() {
+  }
+
+  static synchronized DecodeWorker get(Context context) {
+    if (instance == null) {
+      instance = new DecodeWorker();
+      context.getApplicationContext().registerComponentCallbacks(instance);
+    }
+    return instance;
+  }
+
+  /**
+   * 在主线程中调用，绑定一次扫描会话，见{@link DecodeSession#setHandlers}
+   */
+  synchronized void bind(DecodeSession session) {
+    if (thread == null) {
+      thread = new HandlerThread(TAG);
+      thread.start();
+      detectThread = new HandlerThread("DetectStage");
+      detectThread.start();
+      pipeline = new DecodePipeline();
+      detectHandler = new DetectHandler(detectThread.getLooper(), pipeline);
+    }
+    if (handler == null || handlerInvertScan != session.isInvertScan() ||
+        !handlerHints.equals(session.getHints())) {
+      //配置变了才重新创建Reader。旧的Handler用的是同一个Looper，可能还有它的会话没处理完，
+      //它不再从队列里取帧，处理完自己的R.id.quit以后再释放
+      Log.i(TAG, "Creating decoder for new hints");
+      if (handler != null) {
+        handler.retire();
+      }
+      handler = new DecodeHandler(thread.getLooper(), pipeline, session.getHints(), session.isInvertScan());
+      handlerHints = session.getHints();
+      handlerInvertScan = session.isInvertScan();
+    }
+    activeSessions++;
+    releasePending = false;
+    session.setHandlers(detectHandler, handler);
+    detectHandler.obtainMessage(R.id.bind_session, session).sendToTarget();
+    handler.obtainMessage(R.id.bind_session, session).sendToTarget();
+  }
+
+  /**
+   * 在解码线程中调用，一次会话处理完了R.id.quit
+   */
+  synchronized void onSessionFinished() {
+    activeSessions--;
+    if (releasePending && activeSessions == 0) {
+      release();
+    }
+  }
+
+  private void release() {
+    if (thread != null) {
+      Log.i(TAG, "Releasing decode thread");
+      thread.quit();
+      thread = null;
+      detectThread.quit();
+      detectThread = null;
+      handler.release();
+      handler = null;
+      detectHandler = null;
+      pipeline = null;
+      handlerHints = null;
+    }
+    releasePending = false;
+  }
+
+  @Override
+  public synchronized void onTrimMemory(int level) {
+    //界面只是被隐藏时不释放，回来继续扫描还能复用
+    if (level >= TRIM_MEMORY_RUNNING_LOW && level != TRIM_MEMORY_UI_HIDDEN) {
+      if (activeSessions == 0) {
+        release();
+      } else {
+        releasePending = true;
+      }
+    }
+  }
+
+  @Override
+  public synchronized void onLowMemory() {
+    onTrimMemory(TRIM_MEMORY_COMPLETE);
+  }
+
+  @Override
+  public void onConfigurationChanged(Configuration newConfig) {
+    // do nothing
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+
+import com.icechen.qr_simple.camera.CameraManager;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+import com.icechen.qr_simple.camera.FrameRing;
+
+/**
+ * 解码流水线的检测阶段，在{@link DecodeWorker}的检测线程中运行。
+ *
+ * 接收预览帧，交给{@link DetectStage}在1/4级上判断画面是否变化、找出候选区域，
+ * 只有要解码的帧才被拷贝出来放进{@link DecodePipeline}交给解码阶段；同样在1/4级上调整闪光灯和曝光。
+ * 每一帧处理完都马上回复{@link CaptureActivityHandler}请求下一帧，这样解码线程解码一帧的同时，这里已经在处理下一帧了。
+ */
+final class DetectHandler extends Handler {
+
+  private final DetectStage stage;
+  //以下几项每次扫描会话开始时由R.id.bind_session重新绑定
+  private DecodeSession session;
+  private ScanHost host;
+  private ExposureController exposureController;
+  //扫描框尺寸不变时复用
+  private FrameLuminanceSource source;
+
+  DetectHandler(Looper looper, DecodePipeline pipeline) {
+    super(looper);
+    stage = new DetectStage(pipeline);
+  }
+
+  @Override
+  public void handleMessage(Message message) {
+    if (message.what == R.id.bind_session) {
+      session = (DecodeSession) message.obj;
+      host = session.getHost();
+      exposureController = session.getExposureController();
+      stage.reset();
+
+    } else if (session == null) {
+      //会话已经结束，剩下的帧直接丢弃
+      return;
+
+    } else if (message.what == R.id.decode) {
+      //相机的帧从FrameRing中取，回放的帧直接是byte[]
+      if (message.obj instanceof FrameRing) {
+        detectNewest((FrameRing) message.obj);
+      } else {
+        detect((byte[]) message.obj, message.arg1, message.arg2);
+      }
+
+    } else if (message.what == R.id.quit && message.obj == session) {
+      session = null;
+      host = null;
+      exposureController = null;
+    }
+  }
+
+  /**
+   * 从队列中取出最新的一帧，拷贝完以后马上把缓冲区还给相机
+   */
+  private void detectNewest(FrameRing ring) {
+    FrameRing.Frame frame = ring.take();
+    if (frame == null) {
+      //预览已经停止，队列被换掉了
+      requestNextFrame();
+      return;
+    }
+    try {
+      detect(frame.getData(), frame.getWidth(), frame.getHeight());
+    } finally {
+      ring.release(frame);
+    }
+  }
+
+  private void detect(byte[] data, int width, int height) {
+    if (session.getCancelToken().isCancelled()) {
+      return;
+    }
+    CameraManager cameraManager = host.getCameraManager();
+    source = cameraManager.buildLuminanceSource(data, width, height, source);
+    if (source != null) {
+      if (stage.detect(source, session.getRound(), SystemClock.uptimeMillis())) {
+        //解码线程空闲，唤醒它
+        Message.obtain(session.getDecodeHandler(), R.id.decode).sendToTarget();
+      }
+      //按扫描框内的亮度调整闪光灯和曝光补偿，每一帧都要统计
+      exposureController.onFrame(stage.getQuarter(), cameraManager);
+      if (stage.isSceneChanged()) {
+        //画面变化时通知省电模式恢复正常帧率
+        cameraManager.onScanActivity();
+      }
+    }
+    requestNextFrame();
+  }
+
+  /**
+   * 这一帧已经交给解码阶段，可以请求下一帧了
+   */
+  private void requestNextFrame() {
+    Handler handler = host.getCaptureHandler();
+    if (handler != null) {
+      Message.obtain(handler, R.id.frame_detected).sendToTarget();
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+/**
+ * 检测阶段对一帧的处理，不依赖Handler和相机，{@link DetectHandler}和回放测试共用。
+ *
+ * 一遍扫描生成1/4级（{@link YPlaneDownsampler}），在1/4级上判断画面是否变化、找出候选区域（{@link CandidateDetector}）。
+ * 画面没有变化或者没有候选区域的帧直接跳过，只有要解码的帧才把扫描框内的亮度数据拷贝出来，放进{@link DecodePipeline}。
+ *
+ * 只在检测线程中使用，不需要同步。
+ */
+final class DetectStage {
+
+  //画面不变时也至少隔这么久解码一次，对焦或光线的细微改善不一定能被检测到
+  static final long STATIC_DECODE_INTERVAL_MS = 1000L;
+  //检测用的1/4级相对扫描框缩小的倍数
+  private static final int QUARTER_SCALE = 4;
+
+  private final DecodePipeline pipeline;
+  private final CandidateDetector detector;
+  private final YPlaneDownsampler downsampler;
+  private final SceneChangeDetector sceneChangeDetector;
+  //上一次交给解码阶段的时间
+  private long lastPublishedMillis;
+  private boolean sceneChanged;
+
+  DetectStage(DecodePipeline pipeline) {
+    this.pipeline = pipeline;
+    detector = new CandidateDetector();
+    downsampler = new YPlaneDownsampler();
+    sceneChangeDetector = new SceneChangeDetector();
+    reset();
+  }
+
+  /**
+   * 扫描会话开始时调用，下一帧一定会交给解码阶段
+   */
+  void reset() {
+    sceneChangeDetector.reset();
+    lastPublishedMillis = -STATIC_DECODE_INTERVAL_MS;
+  }
+
+  /**
+   * 处理一帧
+   *
+   * @param source 扫描框内的亮度数据，只在这个方法里读取
+   * @param round 这一帧所属的一轮
+   * @param nowMillis 当前时间，用来判断是否到了画面不变时也要解码的时候
+   * @return 这一帧交给了解码阶段，并且解码线程空闲、需要唤醒时返回true
+   */
+  boolean detect(FrameLuminanceSource source, DecodeRound round, long nowMillis) {
+    long start = System.nanoTime();
+    //之后的统计和检测都在1/4级上做，不拷贝原图
+    downsampler.downsample(source);
+    FrameLuminanceSource quarter = downsampler.getQuarter();
+    boolean due = nowMillis - lastPublishedMillis >= STATIC_DECODE_INTERVAL_MS;
+    sceneChanged = sceneChangeDetector.update(quarter);
+    if (!sceneChanged && pipeline.isLastDecodeFailed() && !due) {
+      //和上一次解码失败的帧相比没有变化，再解码一次也是失败
+      pipeline.onFrameSkipped(System.nanoTime() - start);
+      return false;
+    }
+    detector.detect(quarter.getMatrix(), quarter.getWidth(), quarter.getHeight());
+    if (detector.getCue() == CandidateDetector.Cue.NONE && !due) {
+      //没有找到任何纹理，也至少隔一段时间完整解码一次，以免检测漏掉对比度很低的条码
+      pipeline.onFrameEmpty(System.nanoTime() - start);
+      return false;
+    }
+    lastPublishedMillis = nowMillis;
+    DetectedFrame detected = pipeline.obtain();
+    detected.copyFrom(source);
+    detected.setDetection(detector, QUARTER_SCALE, round);
+    return pipeline.publish(detected, System.nanoTime() - start);
+  }
+
+  /**
+   * @return 上一次{@link #detect}的画面和之前相比是否变化了
+   */
+  boolean isSceneChanged() {
+    return sceneChanged;
+  }
+
+  /**
+   * @return 上一次{@link #detect}的1/4级，下一次调用时会被覆盖
+   */
+  FrameLuminanceSource getQuarter() {
+    return downsampler.getQuarter();
+  }
+
+}
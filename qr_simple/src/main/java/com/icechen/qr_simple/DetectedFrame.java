@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * 检测阶段交给解码阶段的一帧：扫描框内亮度数据的拷贝、候选区域和条码类型的线索，以及它所属的一轮。
+ *
+ * 对象和缓冲区由{@link DecodePipeline}循环使用，同一时刻只属于检测线程、队列或者解码线程其中之一。
+ */
+final class DetectedFrame {
+
+  private byte[] luminances;
+  private int width;
+  private int height;
+  private CandidateDetector.Cue cue;
+  private int regionLeft;
+  private int regionTop;
+  private int regionWidth;
+  private int regionHeight;
+  private DecodeRound round;
+  //进入队列的时间，用于统计在队列中等待的时间
+  long queuedNanos;
+
+  /**
+   * 拷贝扫描框内的亮度数据，之后相机的缓冲区就可以还回去了
+   */
+  void copyFrom(LuminanceSource source) {
+    width = source.getWidth();
+    height = source.getHeight();
+    int area = width * height;
+    if (luminances == null || luminances.length != area) {
+      luminances = new byte[area];
+    }
+    System.arraycopy(source.getMatrix(), 0, luminances, 0, area);
+  }
+
+  /**
+   * 记录检测结果，在{@link #copyFrom}之后调用
+   *
+   * @param detector 在缩小的画面上检测过的detector
+   * @param scale 检测用的画面缩小的倍数，候选区域按它放大回扫描框，到缩小画面边上的区域一直延伸到扫描框的边
+   * @param round 这一帧所属的一轮
+   */
+  void setDetection(CandidateDetector detector, int scale, DecodeRound round) {
+    cue = detector.getCue();
+    regionLeft = Math.min(width, detector.getLeft() * scale);
+    regionTop = Math.min(height, detector.getTop() * scale);
+    int right = detector.getLeft() + detector.getWidth();
+    int bottom = detector.getTop() + detector.getHeight();
+    regionWidth = (right >= width / scale ? width : Math.min(width, right * scale)) - regionLeft;
+    regionHeight = (bottom >= height / scale ? height : Math.min(height, bottom * scale)) - regionTop;
+    this.round = round;
+  }
+
+  /**
+   * 回收前调用，不再引用这一轮
+   */
+  void clear() {
+    round = null;
+  }
+
+  byte[] getLuminances() {
+    return luminances;
+  }
+
+  int getWidth() {
+    return width;
+  }
+
+  int getHeight() {
+    return height;
+  }
+
+  CandidateDetector.Cue getCue() {
+    return cue;
+  }
+
+  int getRegionLeft() {
+    return regionLeft;
+  }
+
+  int getRegionTop() {
+    return regionTop;
+  }
+
+  int getRegionWidth() {
+    return regionWidth;
+  }
+
+  int getRegionHeight() {
+    return regionHeight;
+  }
+
+  DecodeRound getRound() {
+    return round;
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+/**
+ * 解码升级策略。
+ *
+ * 平时用快速的配置解码；连续失败{@link #FAILURES_BEFORE_ESCALATION}帧以后，
+ * 接下来的{@link #ESCALATED_FRAMES}帧改用{@link com.google.zxing.DecodeHintType#TRY_HARDER}，
+ * 这几帧还是失败就退回快速配置，重新计数。解码成功则立即退回。
+ *
+ * 只在解码线程中使用，不需要同步。
+ */
+final class EscalationPolicy {
+
+  private static final int FAILURES_BEFORE_ESCALATION = 10;
+  private static final int ESCALATED_FRAMES = 5;
+
+  private int consecutiveFailures;
+  private int escalatedFramesLeft;
+
+  /**
+   * @return 当前这一帧是否需要使用升级后的配置
+   */
+  boolean isEscalated() {
+    return escalatedFramesLeft > 0;
+  }
+
+  /**
+   * 回到初始状态，新的扫描会话开始时调用
+   */
+  void reset() {
+    consecutiveFailures = 0;
+    escalatedFramesLeft = 0;
+  }
+
+  /**
+   * 每解码完一帧调用一次
+   *
+   * @param success 这一帧是否解码成功
+   */
+  void onFrameDecoded(boolean success) {
+    if (success) {
+      consecutiveFailures = 0;
+      escalatedFramesLeft = 0;
+    } else if (escalatedFramesLeft > 0) {
+      escalatedFramesLeft--;
+    } else if (++consecutiveFailures >= FAILURES_BEFORE_ESCALATION) {
+      consecutiveFailures = 0;
+      escalatedFramesLeft = ESCALATED_FRAMES;
+    }
+  }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.zxing.LuminanceSource;
+import com.icechen.qr_simple.camera.CameraManager;
+
+/**
+ * 根据扫描框内画面的亮度控制闪光灯和曝光补偿，代替原来只看光线传感器的做法。
+ * 传感器经常被手挡住，而且它测的是环境光，不是条码所在的区域。
+ *
+ * 在检测线程中统计扫描框内Y平面1/4级的亮度直方图，用中位数判断画面太暗还是太亮，用过曝像素的比例判断反光。
+ * 补光分成几级：不补光、提高曝光补偿、打开闪光灯，画面连续{@link #STABLE_FRAMES}帧偏暗才升一级，
+ * 偏亮或反光才降一级；暗和亮的阈值之间留有余量，每次切换后也要等相机的自动曝光稳定下来，避免来回切换。
+ *
+ * 相机参数在主线程中修改。同一个对象只能在检测线程中使用，见{@link DetectHandler}。
+ */
+final class ExposureController {
+
+  private static final String TAG = ExposureController.class.getSimpleName();
+
+  //每隔几行、几列取一个像素
+  private static final int SAMPLE_STEP = 4;
+  //中位数低于它算偏暗，高于BRIGHT_MEDIAN算偏亮
+  private static final int DARK_MEDIAN = 45;
+  private static final int BRIGHT_MEDIAN = 160;
+  private static final int SATURATED_LEVEL = 250;
+  //过曝像素超过这个百分比认为是反光
+  private static final int GLARE_PERCENT = 20;
+  private static final int STABLE_FRAMES = 3;
+  //切换后等自动曝光稳定的时间
+  private static final long SETTLE_MS = 1500L;
+
+  //补光的几个等级，下标0是不补光
+  private final boolean[] torchLevels;
+  private final boolean[] boostLevels;
+  private final Handler mainHandler;
+  private final int[] histogram = new int[256];
+  private byte[] row;
+  private int level;
+  private int darkFrames;
+  private int brightFrames;
+  private long settleUntilMillis;
+
+  /**
+   * @param autoTorch 闪光灯是否设为自动
+   * @param adjustExposure 是否允许修改曝光补偿
+   */
+  ExposureController(boolean autoTorch, boolean adjustExposure) {
+    int levels = 1 + (adjustExposure ? 1 : 0) + (autoTorch ? 1 : 0);
+    torchLevels = new boolean[levels];
+    boostLevels = new boolean[levels];
+    if (adjustExposure) {
+      boostLevels[1] = true;
+    }
+    if (autoTorch) {
+      torchLevels[levels - 1] = true;
+    }
+    mainHandler = new Handler(Looper.getMainLooper());
+  }
+
+  /**
+   * 统计这一帧扫描框内的亮度，必要时调整补光
+   *
+   * @param source 扫描框内的亮度数据
+   * @param cameraManager 用来修改相机参数
+   */
+  void onFrame(LuminanceSource source, CameraManager cameraManager) {
+    if (torchLevels.length == 1) {
+      return;
+    }
+    int median = computeHistogram(source);
+    int total = 0;
+    for (int count : histogram) {
+      total += count;
+    }
+    int saturated = 0;
+    for (int i = SATURATED_LEVEL; i < histogram.length; i++) {
+      saturated += histogram[i];
+    }
+    boolean glare = saturated * 100 > total * GLARE_PERCENT;
+    if (median < DARK_MEDIAN && !glare) {
+      darkFrames++;
+      brightFrames = 0;
+    } else if (median > BRIGHT_MEDIAN || glare) {
+      brightFrames++;
+      darkFrames = 0;
+    } else {
+      darkFrames = 0;
+      brightFrames = 0;
+    }
+
+    long now = SystemClock.uptimeMillis();
+    if (now < settleUntilMillis) {
+      return;
+    }
+    int newLevel = level;
+    if (darkFrames >= STABLE_FRAMES && level < torchLevels.length - 1) {
+      newLevel = level + 1;
+    } else if (brightFrames >= STABLE_FRAMES && level > 0) {
+      newLevel = level - 1;
+    }
+    if (newLevel != level) {
+      Log.d(TAG, "Median luminance " + median + ", saturated " + saturated + '/' + total +
+          ", light level " + level + " -> " + newLevel);
+      apply(cameraManager, level, newLevel);
+      level = newLevel;
+      darkFrames = 0;
+      brightFrames = 0;
+      settleUntilMillis = now + SETTLE_MS;
+    }
+  }
+
+  /**
+   * 统计直方图
+   *
+   * @return 亮度中位数
+   */
+  private int computeHistogram(LuminanceSource source) {
+    int[] localHistogram = histogram;
+    for (int i = 0; i < localHistogram.length; i++) {
+      localHistogram[i] = 0;
+    }
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int samples = 0;
+    for (int y = SAMPLE_STEP / 2; y < height; y += SAMPLE_STEP) {
+      row = source.getRow(y, row);
+      for (int x = SAMPLE_STEP / 2; x < width; x += SAMPLE_STEP) {
+        localHistogram[row[x] & 0xff]++;
+        samples++;
+      }
+    }
+    int half = samples / 2;
+    int count = 0;
+    for (int i = 0; i < localHistogram.length; i++) {
+      count += localHistogram[i];
+      if (count > half) {
+        return i;
+      }
+    }
+    return localHistogram.length - 1;
+  }
+
+  private void apply(final CameraManager cameraManager, int oldLevel, int newLevel) {
+    final boolean torch = torchLevels[newLevel];
+    final boolean boost = boostLevels[newLevel];
+    final boolean torchChanged = torch != torchLevels[oldLevel];
+    final boolean boostChanged = boost != boostLevels[oldLevel];
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (boostChanged) {
+          cameraManager.setExposureBoost(boost);
+        }
+        if (torchChanged) {
+          cameraManager.setAutoTorch(torch);
+        }
+      }
+    });
+  }
+
+}
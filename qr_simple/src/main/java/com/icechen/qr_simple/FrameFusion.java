@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.LuminanceSource;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+/**
+ * 多帧融合。
+ *
+ * 保存最近几帧解码失败的扫描框亮度数据，单帧一直解码失败时，把它们对齐后取平均，
+ * 降低弱光下的传感器噪声，破损或者反光的码在不同帧里的缺陷也会被平均掉。
+ * 对齐只估计整体的平移：分别比较每一帧的行投影和列投影，找到差异最小的偏移量。
+ *
+ * 只在解码线程中使用，不需要同步。
+ */
+final class FrameFusion {
+
+  private static final int FRAME_COUNT = 4;
+  //融合图像每隔几帧重新计算一次
+  private static final int FUSION_INTERVAL = 2;
+  //手持时相邻几帧之间最大的平移量，单位为像素
+  private static final int MAX_SHIFT = 8;
+
+  private final byte[][] frames;
+  private final int[][] rowProfiles;
+  private final int[][] columnProfiles;
+  private int width;
+  private int height;
+  private int count;
+  private int newest;
+  private int framesSinceFusion;
+  private byte[] fused;
+  private int[] sums;
+  private int[] weights;
+  private FrameLuminanceSource fusedSource;
+
+  FrameFusion() {
+    frames = new byte[FRAME_COUNT][];
+    rowProfiles = new int[FRAME_COUNT][];
+    columnProfiles = new int[FRAME_COUNT][];
+    newest = -1;
+  }
+
+  /**
+   * 加入一帧解码失败的数据，扫描框的尺寸变化时会清空之前的帧
+   */
+  void add(LuminanceSource source) {
+    int sourceWidth = source.getWidth();
+    int sourceHeight = source.getHeight();
+    if (sourceWidth != width || sourceHeight != height) {
+      width = sourceWidth;
+      height = sourceHeight;
+      for (int i = 0; i < FRAME_COUNT; i++) {
+        frames[i] = null;
+      }
+      fused = null;
+      sums = null;
+      weights = null;
+      fusedSource = null;
+      reset();
+    }
+    newest = (newest + 1) % FRAME_COUNT;
+    if (frames[newest] == null) {
+      frames[newest] = new byte[width * height];
+      rowProfiles[newest] = new int[height];
+      columnProfiles[newest] = new int[width];
+    }
+    byte[] frame = frames[newest];
+    System.arraycopy(source.getMatrix(), 0, frame, 0, frame.length);
+    computeProfiles(frame, rowProfiles[newest], columnProfiles[newest]);
+    if (count < FRAME_COUNT) {
+      count++;
+    }
+    framesSinceFusion++;
+  }
+
+  /**
+   * 成功解码或者扫描会话重新开始时调用
+   */
+  void reset() {
+    count = 0;
+    framesSinceFusion = 0;
+  }
+
+  /**
+   * @return 是否已经攒够了帧，并且到了重新融合的时候
+   */
+  boolean isReady() {
+    return count == FRAME_COUNT && framesSinceFusion >= FUSION_INTERVAL;
+  }
+
+  /**
+   * 以最新的一帧为基准，把其他帧对齐后取平均
+   *
+   * @return 融合后的亮度数据，尺寸不变时每次返回同一个对象
+   */
+  FrameLuminanceSource fuse() {
+    framesSinceFusion = 0;
+    int size = width * height;
+    if (fused == null) {
+      fused = new byte[size];
+      sums = new int[size];
+      weights = new int[size];
+      fusedSource = new FrameLuminanceSource(width, height);
+    }
+    byte[] reference = frames[newest];
+    for (int i = 0; i < size; i++) {
+      sums[i] = reference[i] & 0xFF;
+      weights[i] = 1;
+    }
+    for (int i = 1; i < count; i++) {
+      int index = (newest - i + FRAME_COUNT) % FRAME_COUNT;
+      int dx = findShift(columnProfiles[newest], columnProfiles[index]);
+      int dy = findShift(rowProfiles[newest], rowProfiles[index]);
+      accumulate(frames[index], dx, dy);
+    }
+    for (int i = 0; i < size; i++) {
+      int weight = weights[i];
+      fused[i] = (byte) ((sums[i] + weight / 2) / weight);
+    }
+    fusedSource.setFrame(fused, width, height, 0, 0);
+    return fusedSource;
+  }
+
+  /**
+   * 把另一帧平移(dx, dy)后累加到参考帧上，移出画面的部分不参与平均
+   */
+  private void accumulate(byte[] frame, int dx, int dy) {
+    int yStart = Math.max(0, -dy);
+    int yEnd = Math.min(height, height - dy);
+    int xStart = Math.max(0, -dx);
+    int xEnd = Math.min(width, width - dx);
+    for (int y = yStart; y < yEnd; y++) {
+      int offset = y * width;
+      int frameOffset = (y + dy) * width + dx;
+      for (int x = xStart; x < xEnd; x++) {
+        sums[offset + x] += frame[frameOffset + x] & 0xFF;
+        weights[offset + x]++;
+      }
+    }
+  }
+
+  private void computeProfiles(byte[] frame, int[] rowProfile, int[] columnProfile) {
+    for (int x = 0; x < width; x++) {
+      columnProfile[x] = 0;
+    }
+    for (int y = 0; y < height; y++) {
+      int offset = y * width;
+      int rowSum = 0;
+      for (int x = 0; x < width; x++) {
+        int luminance = frame[offset + x] & 0xFF;
+        rowSum += luminance;
+        columnProfile[x] += luminance;
+      }
+      rowProfile[y] = rowSum;
+    }
+  }
+
+  /**
+   * 找到使两条投影最接近的偏移量，即reference[i]对应frame[i + shift]
+   */
+  private static int findShift(int[] reference, int[] profile) {
+    int length = reference.length;
+    int bestShift = 0;
+    long bestScore = Long.MAX_VALUE;
+    for (int shift = -MAX_SHIFT; shift <= MAX_SHIFT; shift++) {
+      int start = Math.max(0, -shift);
+      int end = Math.min(length, length - shift);
+      if (end - start <= 0) {
+        continue;
+      }
+      long difference = 0;
+      for (int i = start; i < end; i++) {
+        difference += Math.abs(reference[i] - profile[i + shift]);
+      }
+      //按重叠的长度归一化，避免偏移越大重叠越少反而得分越低
+      long score = difference / (end - start);
+      if (score < bestScore) {
+        bestScore = score;
+        bestShift = shift;
+      }
+    }
+    return bestShift;
+  }
+
+}
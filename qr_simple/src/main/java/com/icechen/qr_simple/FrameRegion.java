@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+/**
+ * 解码阶段看到的一帧：指向检测好的帧的整个扫描框和其中的候选区域，以及把结果点换算回扫描框。
+ *
+ * 候选区域的尺寸对齐到扫描框边长的几个固定比例，窗口以候选区域为中心，整个扫描框和每种尺寸各有一个
+ * {@link FrameLuminanceSource}和绑定在它上面的{@link DecodeContext}。条码在画面中移动、跨过检测的格子
+ * 或者在候选区域和整个扫描框之间切换时，Binarizer和它的数组都原地复用，扫描框尺寸变化时才重新创建。
+ * 不依赖Handler，{@link DecodeHandler}和回放测试共用。只在解码线程中使用，不需要同步。
+ */
+final class FrameRegion {
+
+  //候选区域的边长是扫描框边长的八分之几，从小到大；放不进最大的一种时直接解码整个扫描框
+  private static final int[] REGION_EIGHTHS = {4, 6, 7};
+
+  private final DecodeContext frameContext;
+  private final DecodeContext[] regionContexts;
+  private FrameLuminanceSource frameSource;
+  private final FrameLuminanceSource[] regionSources;
+  //正在解码的区域在扫描框中的位置
+  private int left;
+  private int top;
+
+  /**
+   * @param cancelToken 解码时检查的取消标记
+   */
+  FrameRegion(CancelToken cancelToken) {
+    frameContext = new DecodeContext(cancelToken);
+    regionContexts = new DecodeContext[REGION_EIGHTHS.length];
+    for (int i = 0; i < regionContexts.length; i++) {
+      regionContexts[i] = new DecodeContext(cancelToken);
+    }
+    regionSources = new FrameLuminanceSource[REGION_EIGHTHS.length];
+  }
+
+  /**
+   * 指向检测好的帧的整个扫描框
+   *
+   * @return 整个扫描框，尺寸不变时是同一个对象
+   */
+  FrameLuminanceSource setFrame(DetectedFrame detected) {
+    int width = detected.getWidth();
+    int height = detected.getHeight();
+    if (frameSource == null || frameSource.getWidth() != width || frameSource.getHeight() != height) {
+      frameSource = new FrameLuminanceSource(width, height);
+      for (int i = 0; i < regionSources.length; i++) {
+        regionSources[i] = new FrameLuminanceSource(
+            Math.max(1, width * REGION_EIGHTHS[i] / 8), Math.max(1, height * REGION_EIGHTHS[i] / 8));
+      }
+    }
+    frameSource.setFrame(detected.getLuminances(), width, height, 0, 0);
+    useWholeFrame();
+    return frameSource;
+  }
+
+  /**
+   * 检测阶段找到的候选区域能放进某种固定尺寸时只解码这个尺寸的窗口，否则解码整个扫描框。在{@link #setFrame}之后调用
+   *
+   * @param strategy 这一帧使用的二值化方式
+   * @return 已经指向要解码的区域的解码结构
+   */
+  DecodeContext selectRegion(DetectedFrame detected, BinarizerStrategy strategy) {
+    int width = detected.getRegionWidth();
+    int height = detected.getRegionHeight();
+    if (detected.getCue() != CandidateDetector.Cue.NONE) {
+      for (int i = 0; i < regionSources.length; i++) {
+        FrameLuminanceSource regionSource = regionSources[i];
+        int regionWidth = regionSource.getWidth();
+        int regionHeight = regionSource.getHeight();
+        if (width <= regionWidth && height <= regionHeight) {
+          //窗口的中心对准候选区域的中心，不超出扫描框
+          left = clamp(detected.getRegionLeft() + (width - regionWidth) / 2, frameSource.getWidth() - regionWidth);
+          top = clamp(detected.getRegionTop() + (height - regionHeight) / 2, frameSource.getHeight() - regionHeight);
+          regionSource.setFrame(detected.getLuminances(), frameSource.getWidth(), frameSource.getHeight(), left, top);
+          regionContexts[i].setSource(regionSource, strategy);
+          return regionContexts[i];
+        }
+      }
+    }
+    useWholeFrame();
+    frameContext.setSource(frameSource, strategy);
+    return frameContext;
+  }
+
+  private static int clamp(int value, int max) {
+    return Math.max(0, Math.min(value, max));
+  }
+  /**
+   * 接下来解码的是整个扫描框，比如多帧融合的结果
+   */
+  void useWholeFrame() {
+    left = 0;
+    top = 0;
+  }
+
+  /**
+   * 把正在解码的区域中的结果点换算回整个扫描框
+   */
+  void toFramePoints(Result result) {
+    ResultPoint[] points = result.getResultPoints();
+    if (points == null || (left == 0 && top == 0)) {
+      return;
+    }
+    for (int i = 0; i < points.length; i++) {
+      if (points[i] != null) {
+        points[i] = toFramePoint(points[i]);
+      }
+    }
+  }
+
+  ResultPoint toFramePoint(ResultPoint point) {
+    return new ResultPoint(point.getX() + left, point.getY() + top);
+  }
+
+}
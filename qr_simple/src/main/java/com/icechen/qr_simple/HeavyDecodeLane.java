@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.util.Log;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 解码PDF417和Aztec的慢通道。
+ *
+ * 这两种格式的定位在噪点多的画面上可能要几百毫秒，放在快通道（{@link DecodeHandler}）里会拖慢二维码和一维码。
+ * 这里用一个低优先级的线程单独解码：快通道每隔几帧把扫描框内的亮度数据拷贝一份交过来，这边还在忙就跳过这一帧。
+ * 两个通道通过{@link DecodeRound}抢先发布结果，输的一方被取消。
+ *
+ * {@link #offer}只在快通道的解码线程中调用，其余部分只在这个通道自己的线程中运行。
+ */
+final class HeavyDecodeLane {
+
+  private static final String TAG = HeavyDecodeLane.class.getSimpleName();
+
+  private final HandlerThread thread;
+  private final Handler handler;
+  private final MultiFormatReader reader;
+  private final boolean invertScan;
+  //父标记是提交这一帧时的那一轮
+  private final CancelToken cancelToken;
+  private final DecodeContext context;
+  private final YPlaneDownsampler downsampler;
+  private final AtomicBoolean busy;
+  private final Runnable decodeTask;
+  //以下几项在offer中设置，通过Handler传给这个通道的线程
+  private byte[] frame;
+  private FrameLuminanceSource source;
+  private BinarizerStrategy strategy;
+  private DecodeRound round;
+  //提交这一帧时会话的CaptureActivityHandler，之后宿主可能已经换了新的会话
+  private Handler captureHandler;
+  //快通道的线程累加提交的帧，慢通道的线程累加解出的帧，会话结束时在快通道的线程中读取并清零
+  private final AtomicInteger offeredFrames;
+  private final AtomicInteger foundFrames;
+
+  /**
+   * @param hints 只包含慢格式的解码指示，不含结果点回调
+   * @param invertScan 是否同时尝试反色
+   */
+  HeavyDecodeLane(Map<DecodeHintType,Object> hints, boolean invertScan) {
+    this.invertScan = invertScan;
+    cancelToken = new CancelToken();
+    Map<DecodeHintType,Object> laneHints = new EnumMap<>(DecodeHintType.class);
+    laneHints.putAll(hints);
+    //定位阶段每找到一个可能的结果点都检查一次是否已经被快通道抢先
+    laneHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, new ResultPointCallback() {
+      @Override
+      public void foundPossibleResultPoint(ResultPoint point) {
+        cancelToken.throwIfCancelled();
+      }
+    });
+    reader = new MultiFormatReader();
+    reader.setHints(laneHints);
+    context = new DecodeContext(cancelToken);
+    downsampler = new YPlaneDownsampler();
+    busy = new AtomicBoolean();
+    offeredFrames = new AtomicInteger();
+    foundFrames = new AtomicInteger();
+    decodeTask = new Runnable() {
+      @Override
+      public void run() {
+        decode();
+      }
+    };
+    thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+    thread.start();
+    handler = new Handler(thread.getLooper());
+  }
+
+  /**
+   * 把这一帧交给慢通道，上一帧还没解完时直接跳过
+   *
+   * @param frameSource 快通道这一帧的亮度数据，会拷贝一份，调用以后可以继续使用
+   * @param frameStrategy 快通道这一帧使用的二值化方式
+   * @param frameRound 这一帧所属的一轮
+   * @param frameSession 这一帧所属的会话，结果只发给这个会话
+   * @return 是否接受了这一帧
+   */
+  boolean offer(LuminanceSource frameSource,
+                BinarizerStrategy frameStrategy,
+                DecodeRound frameRound,
+                DecodeSession frameSession) {
+    Handler frameHandler = frameSession.getHost().getCaptureHandler();
+    if (frameHandler == null || !busy.compareAndSet(false, true)) {
+      return false;
+    }
+    int width = frameSource.getWidth();
+    int height = frameSource.getHeight();
+    if (source == null || source.getWidth() != width || source.getHeight() != height) {
+      frame = new byte[width * height];
+      source = new FrameLuminanceSource(width, height);
+    }
+    System.arraycopy(frameSource.getMatrix(), 0, frame, 0, frame.length);
+    source.setFrame(frame, width, height, 0, 0);
+    strategy = frameStrategy;
+    round = frameRound;
+    captureHandler = frameHandler;
+    offeredFrames.incrementAndGet();
+    handler.post(decodeTask);
+    return true;
+  }
+
+  private void decode() {
+    try {
+      cancelToken.setParent(round.getCancelToken());
+      cancelToken.throwIfCancelled();
+      long start = System.currentTimeMillis();
+      context.setSource(source, strategy);
+      Result result = decodeBitmap(new BinaryBitmap(context.getBinarizer()));
+      if (result == null && invertScan) {
+        cancelToken.throwIfCancelled();
+        result = decodeBitmap(new BinaryBitmap(context.getInvertedBinarizer()));
+      }
+      //会话已经结束时claim失败，结果丢弃
+      if (result != null && round.claim()) {
+        foundFrames.incrementAndGet();
+        Log.d(TAG, "Found barcode in " + (System.currentTimeMillis() - start) + " ms");
+        Message message = Message.obtain(captureHandler, R.id.decode_succeeded, result);
+        Bundle bundle = new Bundle();
+        DecodeHandler.bundleThumbnail(downsampler, source, bundle);
+        message.setData(bundle);
+        message.sendToTarget();
+      }
+    } catch (DecodeCancelledException dce) {
+      //快通道已经发布了结果，或者会话已经结束
+    } finally {
+      cancelToken.setParent(null);
+      round = null;
+      captureHandler = null;
+      busy.set(false);
+    }
+  }
+
+  private Result decodeBitmap(BinaryBitmap bitmap) {
+    try {
+      return reader.decodeWithState(bitmap);
+    } catch (ReaderException re) {
+      return null;
+    } finally {
+      reader.reset();
+    }
+  }
+
+  /**
+   * 会话结束时在快通道的解码线程中调用
+   */
+  void logAndReset() {
+    Log.i(TAG, "Offered " + offeredFrames.getAndSet(0) + " frames, found " + foundFrames.getAndSet(0));
+  }
+
+  /**
+   * 结束这个通道的线程，正在解的帧会先解完
+   */
+  void release() {
+    thread.quit();
+  }
+
+}
@@ -21,12 +21,14 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.os.AsyncTask;
 import android.os.BatteryManager;
 import android.util.Log;
 
+import com.icechen.qr_simple.camera.CameraManager;
+
 /**
- * 省电
+ * 省电：使用电池时，长时间没有扫到结果就关闭Activity；电源状态也会告诉{@link CameraManager}，
+ * 它只在使用电池时进入省电模式
  */
 final class InactivityTimer {
 
@@ -36,24 +38,34 @@ final class InactivityTimer {
 
   private final Activity activity;
   private final BroadcastReceiver powerStatusReceiver;
+  private final Runnable finishTask;
   private boolean registered;
-  private AsyncTask<Object,Object,Object> inactivityTask;
+  private CameraManager cameraManager;
+  private ScanScheduler.Task inactivityTask;
 
   InactivityTimer(Activity activity) {
     this.activity = activity;
     powerStatusReceiver = new PowerStatusReceiver();
+    finishTask = new Runnable() {
+      @Override
+      public void run() {
+        Log.i(TAG, "Finishing activity due to inactivity");
+        InactivityTimer.this.activity.finish();
+      }
+    };
     registered = false;
     onActivity();
   }
 
   synchronized void onActivity() {
     cancel();
-    inactivityTask = new InactivityAsyncTask();
-    inactivityTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    //只是在调度线程的消息队列里放一条延时消息，不占用线程
+    inactivityTask = ScanScheduler.get().schedule(finishTask, INACTIVITY_DELAY_MS);
   }
 
   public synchronized void onPause() {
     cancel();
+    cameraManager = null;
     if (registered) {
       activity.unregisterReceiver(powerStatusReceiver);
       registered = false;
@@ -62,7 +74,8 @@ final class InactivityTimer {
     }
   }
 
-  public synchronized void onResume() {
+  public synchronized void onResume(CameraManager cameraManager) {
+    this.cameraManager = cameraManager;
     if (registered) {
       Log.w(TAG, "PowerStatusReceiver was already registered?");
     } else {
@@ -73,9 +86,9 @@ final class InactivityTimer {
   }
 
   private synchronized void cancel() {
-    AsyncTask<?,?,?> task = inactivityTask;
+    ScanScheduler.Task task = inactivityTask;
     if (task != null) {
-      task.cancel(true);
+      task.cancel();
       inactivityTask = null;
     }
   }
@@ -84,32 +97,25 @@ final class InactivityTimer {
     cancel();
   }
 
+  private synchronized void onPowerStatusChanged(boolean onBattery) {
+    if (onBattery) {
+      onActivity();
+    } else {
+      cancel();
+    }
+    if (cameraManager != null) {
+      cameraManager.setBatteryPowered(onBattery);
+    }
+  }
+
   private final class PowerStatusReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent){
       if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
         // 0 indicates that we're on battery
         boolean onBatteryNow = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, -1) <= 0;
-        if (onBatteryNow) {
-          InactivityTimer.this.onActivity();
-        } else {
-          InactivityTimer.this.cancel();
-        }
-      }
-    }
-  }
-
-  private final class InactivityAsyncTask extends AsyncTask<Object,Object,Object> {
-    @Override
-    protected Object doInBackground(Object... objects) {
-      try {
-        Thread.sleep(INACTIVITY_DELAY_MS);
-        Log.i(TAG, "Finishing activity due to inactivity");
-        activity.finish();
-      } catch (InterruptedException e) {
-        // continue without killing
+        onPowerStatusChanged(onBatteryNow);
       }
-      return null;
     }
   }
 
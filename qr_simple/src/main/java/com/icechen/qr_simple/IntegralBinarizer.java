@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * 基于积分图的自适应阈值Binarizer。
+ *
+ * 扫描一遍亮度数据建立积分图（summed-area table），之后任意矩形区域的亮度和都只需要四次查表，
+ * 每个像素和它周围窗口的平均亮度比较，比平均值暗{@link #THRESHOLD_PERCENT}%以上就是黑色。
+ * 和{@link ReusableHybridBinarizer}相比，它不需要按块计算黑点再做5x5平滑，每个像素的开销是固定的，
+ * 而且阈值是逐像素平滑变化的，没有块边界。
+ *
+ * 和HybridBinarizer一样，一维码使用父类的直方图方法逐行二值化，只有二维码使用这里的BitMatrix。
+ * 积分图是复用的int数组，每处理完一个块的行都会检查一次是否已经取消。
+ */
+final class IntegralBinarizer extends ReusableGlobalHistogramBinarizer {
+
+  //窗口的边长是画面较长一边的1/8
+  private static final int WINDOW_DIVISOR = 8;
+  private static final int MIN_WINDOW_RADIUS = 4;
+  //255 * 窗口面积 * 100不能超过int的范围
+  private static final int MAX_WINDOW_RADIUS = 144;
+  private static final int THRESHOLD_PERCENT = 15;
+  //每处理这么多行检查一次取消
+  private static final int ROWS_PER_BLOCK = 8;
+  //太小的画面退回全局直方图
+  private static final int MINIMUM_DIMENSION = 40;
+
+  private final CancelToken cancelToken;
+  private int[] integral;
+  private BitMatrix matrix;
+  private boolean matrixValid;
+  private BitArray row;
+
+  /**
+   * @param cancelToken 可以为null
+   */
+  IntegralBinarizer(LuminanceSource source, CancelToken cancelToken) {
+    super(source);
+    this.cancelToken = cancelToken;
+  }
+
+  @Override
+  void reset() {
+    super.reset();
+    matrixValid = false;
+  }
+
+  @Override
+  public BitMatrix getBlackMatrix() throws NotFoundException {
+    if (matrixValid) {
+      return matrix;
+    }
+    LuminanceSource source = getLuminanceSource();
+    int width = source.getWidth();
+    int height = source.getHeight();
+    if (width < MINIMUM_DIMENSION || height < MINIMUM_DIMENSION) {
+      matrix = super.getBlackMatrix();
+      matrixValid = true;
+      return matrix;
+    }
+    byte[] luminances = source.getMatrix();
+    int stride = width + 1;
+    int size = stride * (height + 1);
+    if (integral == null || integral.length < size) {
+      integral = new int[size];
+    }
+    buildIntegral(luminances, width, height, integral);
+
+    matrix = reuseMatrix(matrix, width, height);
+    if (row == null || row.getSize() != width) {
+      row = new BitArray(width);
+    }
+    threshold(luminances, width, height, integral, matrix, row);
+    matrixValid = true;
+    return matrix;
+  }
+
+  @Override
+  public Binarizer createBinarizer(LuminanceSource source) {
+    return new IntegralBinarizer(source, cancelToken);
+  }
+
+  /**
+   * 一遍扫描建立积分图，integral[(y + 1) * (width + 1) + x + 1]是(0, 0)到(x, y)的亮度和，
+   * 第0行和第0列始终为0
+   */
+  private void buildIntegral(byte[] luminances, int width, int height, int[] integral) {
+    int stride = width + 1;
+    for (int x = 0; x < stride; x++) {
+      integral[x] = 0;
+    }
+    for (int y = 0; y < height; y++) {
+      if ((y & (ROWS_PER_BLOCK - 1)) == 0) {
+        checkCancelled();
+      }
+      int offset = y * width;
+      int above = y * stride;
+      int current = above + stride;
+      integral[current] = 0;
+      int rowSum = 0;
+      for (int x = 0; x < width; x++) {
+        rowSum += luminances[offset + x] & 0xFF;
+        integral[current + x + 1] = integral[above + x + 1] + rowSum;
+      }
+    }
+  }
+
+  /**
+   * 每个像素和以它为中心的窗口平均亮度比较，窗口在画面边缘会被截断。
+   * 中间部分的窗口大小不变，单独一个循环，省掉逐像素的边界判断
+   */
+  private void threshold(byte[] luminances,
+                         int width,
+                         int height,
+                         int[] integral,
+                         BitMatrix matrix,
+                         BitArray row) {
+    int stride = width + 1;
+    int radius = Math.max(width, height) / WINDOW_DIVISOR / 2;
+    radius = Math.max(MIN_WINDOW_RADIUS, Math.min(MAX_WINDOW_RADIUS, radius));
+    //窗口完整的x范围
+    int innerStart = Math.min(radius, width);
+    int innerEnd = Math.max(innerStart, width - radius - 1);
+    int[] bits = row.getBitArray();
+    for (int y = 0; y < height; y++) {
+      if ((y & (ROWS_PER_BLOCK - 1)) == 0) {
+        checkCancelled();
+      }
+      int top = Math.max(0, y - radius) * stride;
+      int bottom = (Math.min(height - 1, y + radius) + 1) * stride;
+      int windowHeight = (bottom - top) / stride;
+      int offset = y * width;
+      row.clear();
+      for (int x = 0; x < innerStart; x++) {
+        thresholdPixel(luminances[offset + x], x, width, radius, top, bottom, windowHeight, integral, bits);
+      }
+      int innerCount = (2 * radius + 1) * windowHeight * 100;
+      for (int x = innerStart, left = top + x - radius, right = left + 2 * radius + 1,
+           leftBottom = bottom + x - radius, rightBottom = leftBottom + 2 * radius + 1;
+           x < innerEnd; x++, left++, right++, leftBottom++, rightBottom++) {
+        int sum = integral[rightBottom] - integral[right] - integral[leftBottom] + integral[left];
+        // pixel <= mean * (100 - T) / 100，两边同时乘以count * 100避免除法
+        if ((luminances[offset + x] & 0xFF) * innerCount <= sum * (100 - THRESHOLD_PERCENT)) {
+          bits[x >> 5] |= 1 << (x & 0x1F);
+        }
+      }
+      for (int x = innerEnd; x < width; x++) {
+        thresholdPixel(luminances[offset + x], x, width, radius, top, bottom, windowHeight, integral, bits);
+      }
+      matrix.setRow(y, row);
+    }
+  }
+
+  /**
+   * 画面左右边缘的像素，窗口需要截断
+   */
+  private static void thresholdPixel(byte luminance,
+                                     int x,
+                                     int width,
+                                     int radius,
+                                     int top,
+                                     int bottom,
+                                     int windowHeight,
+                                     int[] integral,
+                                     int[] bits) {
+    int left = Math.max(0, x - radius);
+    int right = Math.min(width - 1, x + radius) + 1;
+    int count = (right - left) * windowHeight * 100;
+    int sum = integral[bottom + right] - integral[top + right] - integral[bottom + left] + integral[top + left];
+    if ((luminance & 0xFF) * count <= sum * (100 - THRESHOLD_PERCENT)) {
+      bits[x >> 5] |= 1 << (x & 0x1F);
+    }
+  }
+
+  private void checkCancelled() {
+    if (cancelToken != null) {
+      cancelToken.throwIfCancelled();
+    }
+  }
+
+}
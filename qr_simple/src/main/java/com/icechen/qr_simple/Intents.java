@@ -170,6 +170,65 @@ public final class Intents {
      */
     public static final String SAVE_HISTORY = "SAVE_HISTORY";
 
+    /**
+     * Controls how much is returned along with the decoded text. Specified as a {@link String}, one of
+     * {@link #RESULT_PAYLOAD_TEXT}, {@link #RESULT_PAYLOAD_METADATA}, {@link #RESULT_PAYLOAD_IMAGE_URI} or
+     * {@link #RESULT_PAYLOAD_BITMAP}. Defaults to {@link #RESULT_PAYLOAD_TEXT}.
+     */
+    public static final String RESULT_PAYLOAD = "SCAN_RESULT_PAYLOAD";
+
+    /**
+     * Return only {@link #RESULT} and {@link #RESULT_FORMAT}.
+     */
+    public static final String RESULT_PAYLOAD_TEXT = "TEXT";
+
+    /**
+     * Also return {@link #RESULT_BYTES} and the result metadata, such as {@link #RESULT_ORIENTATION},
+     * {@link #RESULT_ERROR_CORRECTION_LEVEL}, {@link #RESULT_UPC_EAN_EXTENSION} and the byte segments.
+     */
+    public static final String RESULT_PAYLOAD_METADATA = "METADATA";
+
+    /**
+     * Like {@link #RESULT_PAYLOAD_METADATA}, and also return a content URI to a JPEG of the scanned
+     * barcode under {@link #RESULT_IMAGE_URI}. Read permission on the URI is granted to the caller,
+     * so the image itself never travels through the binder.
+     */
+    public static final String RESULT_PAYLOAD_IMAGE_URI = "IMAGE_URI";
+
+    /**
+     * Also return the thumbnail of the scanned barcode as a parcelled {@link android.graphics.Bitmap}
+     * under "codedBitmap", as earlier versions always did. Large thumbnails may fail with
+     * {@link android.os.TransactionTooLargeException}; prefer {@link #RESULT_PAYLOAD_IMAGE_URI}.
+     */
+    public static final String RESULT_PAYLOAD_BITMAP = "BITMAP";
+
+    /**
+     * Call {@link android.content.Intent#getParcelableExtra(String)} with {@link #RESULT_IMAGE_URI}
+     * to get the {@link android.net.Uri} of the barcode image, if requested with
+     * {@link #RESULT_PAYLOAD_IMAGE_URI}.
+     */
+    public static final String RESULT_IMAGE_URI = "SCAN_RESULT_IMAGE_URI";
+
+    /**
+     * Name of a file to record the preview frames sent for decoding to, so that a scan can be
+     * reproduced later with {@link #REPLAY_FRAMES}. The file is created in the app's external files
+     * directory, under "frame_recordings". Specified as a {@link String}.
+     */
+    public static final String RECORD_FRAMES = "SCAN_RECORD_FRAMES";
+
+    /**
+     * Name of a recording made with {@link #RECORD_FRAMES} to decode instead of live camera frames.
+     * The camera preview is still shown. Specified as a {@link String}.
+     */
+    public static final String REPLAY_FRAMES = "SCAN_REPLAY_FRAMES";
+
+    /**
+     * Whether {@link #REPLAY_FRAMES} plays back at the recorded speed, dropping frames while decoding
+     * like a live camera does, or sends every frame as fast as it can be decoded.
+     * Specified as a {@code boolean}; defaults to true.
+     */
+    public static final String REPLAY_REAL_TIME = "SCAN_REPLAY_REAL_TIME";
+
     private Scan() {
     }
   }
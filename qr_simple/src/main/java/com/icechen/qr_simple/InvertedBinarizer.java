@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * 反色的Binarizer，用来识别黑底白码。
+ *
+ * 它不会像{@link com.google.zxing.InvertedLuminanceSource}那样把亮度反转后再二值化一遍，
+ * 而是直接把被包装的Binarizer已经算好的{@link BitMatrix}逐位取反。
+ * {@link com.google.zxing.common.HybridBinarizer}会缓存它的BitMatrix，所以同一帧正反两次尝试只需要二值化一次。
+ */
+final class InvertedBinarizer extends ReusableBinarizer {
+
+  private final Binarizer delegate;
+  private BitMatrix matrix;
+  private boolean matrixValid;
+  private BitArray row;
+
+  InvertedBinarizer(Binarizer delegate) {
+    super(delegate.getLuminanceSource());
+    this.delegate = delegate;
+  }
+
+  /**
+   * 被包装的Binarizer换成新的一帧以后调用，它自己需要单独reset
+   */
+  @Override
+  void reset() {
+    matrixValid = false;
+  }
+
+  @Override
+  public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+    BitArray blackRow = delegate.getBlackRow(y, row);
+    invert(blackRow);
+    return blackRow;
+  }
+
+  @Override
+  public BitMatrix getBlackMatrix() throws NotFoundException {
+    if (!matrixValid) {
+      BitMatrix source = delegate.getBlackMatrix();
+      int width = source.getWidth();
+      int height = source.getHeight();
+      BitMatrix inverted = matrix != null ? matrix : new BitMatrix(width, height);
+      BitArray row = this.row;
+      for (int y = 0; y < height; y++) {
+        row = source.getRow(y, row);
+        invert(row);
+        inverted.setRow(y, row);
+      }
+      this.row = row;
+      matrix = inverted;
+      matrixValid = true;
+    }
+    return matrix;
+  }
+
+  @Override
+  public Binarizer createBinarizer(LuminanceSource source) {
+    return new InvertedBinarizer(delegate.createBinarizer(source));
+  }
+
+  /**
+   * 把一行逐位取反，超出行宽的位保持为0
+   */
+  static void invert(BitArray row) {
+    int[] bits = row.getBitArray();
+    int size = row.getSize();
+    int words = (size + 31) / 32;
+    for (int i = 0; i < words; i++) {
+      bits[i] = ~bits[i];
+    }
+    int tail = size & 0x1F;
+    if (tail != 0) {
+      bits[words - 1] &= (1 << tail) - 1;
+    }
+  }
+
+}
@@ -46,6 +46,8 @@ public final class PreferencesActivity extends Activity {
   public static final String KEY_SUPPLEMENTAL = "preferences_supplemental";
   public static final String KEY_AUTO_FOCUS = "preferences_auto_focus";
   public static final String KEY_INVERT_SCAN = "preferences_invert_scan";  
+  public static final String KEY_BINARIZER = "preferences_binarizer";
+  public static final String KEY_POWER_SAVING = "preferences_power_saving";
   public static final String KEY_SEARCH_COUNTRY = "preferences_search_country";
   public static final String KEY_DISABLE_AUTO_ORIENTATION = "preferences_orientation";
 
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+
+/**
+ * 可以跨帧复用的Binarizer。
+ *
+ * ZXing的Binarizer和它的LuminanceSource是一一绑定的，每一帧都要重新创建，连同内部的数组和BitMatrix一起。
+ * 这里的Binarizer绑定的是一个会被原地更新的LuminanceSource（见{@link com.icechen.qr_simple.camera.FrameLuminanceSource}），
+ * 数据源换成新的一帧以后调用{@link #reset()}，丢弃缓存的结果，但保留已经分配的数组，尺寸不变时不会再分配内存。
+ *
+ * 只在一个解码线程中使用，不需要同步。
+ */
+abstract class ReusableBinarizer extends Binarizer {
+
+  ReusableBinarizer(LuminanceSource source) {
+    super(source);
+  }
+
+  /**
+   * 数据源的内容已经换成了新的一帧
+   */
+  abstract void reset();
+
+}
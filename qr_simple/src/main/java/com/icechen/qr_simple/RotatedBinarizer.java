@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * 顺时针旋转90度的Binarizer，用来识别竖着的一维码。
+ *
+ * 和{@link com.google.zxing.BinaryBitmap#rotateCounterClockwise()}不同，它不需要旋转亮度数据再重新二值化，
+ * 而是直接旋转被包装的Binarizer已经算好的{@link BitMatrix}。对应的亮度数据也只是一个按需计算的旋转视图，
+ * 见{@link RotatedLuminanceSource}。
+ */
+final class RotatedBinarizer extends ReusableBinarizer {
+
+  private final Binarizer delegate;
+  private BitMatrix matrix;
+  private boolean matrixValid;
+  private BitArray sourceRow;
+
+  RotatedBinarizer(Binarizer delegate) {
+    super(new RotatedLuminanceSource(delegate.getLuminanceSource()));
+    this.delegate = delegate;
+  }
+
+  /**
+   * 被包装的Binarizer换成新的一帧以后调用，它自己需要单独reset
+   */
+  @Override
+  void reset() {
+    matrixValid = false;
+    ((RotatedLuminanceSource) getLuminanceSource()).reset();
+  }
+
+  @Override
+  public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+    return getBlackMatrix().getRow(y, row);
+  }
+
+  @Override
+  public BitMatrix getBlackMatrix() throws NotFoundException {
+    if (!matrixValid) {
+      BitMatrix source = delegate.getBlackMatrix();
+      int width = source.getWidth();
+      int height = source.getHeight();
+      //旋转后宽高互换，原来的(x, y)变成(height - 1 - y, x)
+      BitMatrix rotated = ReusableGlobalHistogramBinarizer.reuseMatrix(matrix, height, width);
+      BitArray row = sourceRow;
+      for (int y = 0; y < height; y++) {
+        row = source.getRow(y, row);
+        int x = row.getNextSet(0);
+        while (x < width) {
+          rotated.set(height - 1 - y, x);
+          x = row.getNextSet(x + 1);
+        }
+      }
+      sourceRow = row;
+      matrix = rotated;
+      matrixValid = true;
+    }
+    return matrix;
+  }
+
+  @Override
+  public Binarizer createBinarizer(LuminanceSource source) {
+    return delegate.createBinarizer(source);
+  }
+
+}
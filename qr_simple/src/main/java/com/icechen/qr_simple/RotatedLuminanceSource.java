@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * 顺时针旋转90度的亮度数据视图。旋转后的数据只在第一次被读取时计算一次，之后一直复用，
+ * 解码器只用到宽高时不会产生任何开销。被包装的数据源换成新的一帧以后调用{@link #reset()}，数组会被复用。
+ */
+final class RotatedLuminanceSource extends LuminanceSource {
+
+  private final LuminanceSource delegate;
+  private byte[] rotated;
+  private boolean rotatedValid;
+
+  RotatedLuminanceSource(LuminanceSource delegate) {
+    super(delegate.getHeight(), delegate.getWidth());
+    this.delegate = delegate;
+  }
+
+  void reset() {
+    rotatedValid = false;
+  }
+
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    System.arraycopy(getMatrix(), y * width, row, 0, width);
+    return row;
+  }
+
+  @Override
+  public byte[] getMatrix() {
+    if (!rotatedValid) {
+      byte[] source = delegate.getMatrix();
+      int sourceWidth = delegate.getWidth();
+      int sourceHeight = delegate.getHeight();
+      byte[] matrix = rotated != null ? rotated : new byte[sourceWidth * sourceHeight];
+      //旋转后的宽度等于原来的高度
+      for (int y = 0; y < sourceHeight; y++) {
+        int x0 = sourceHeight - 1 - y;
+        int offset = y * sourceWidth;
+        for (int x = 0; x < sourceWidth; x++) {
+          matrix[x * sourceHeight + x0] = source[offset + x];
+        }
+      }
+      rotated = matrix;
+      rotatedValid = true;
+    }
+    return rotated;
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+
+import com.google.zxing.Result;
+import com.icechen.qr_simple.camera.CameraManager;
+
+/**
+ * 扫描宿主。{@link CaptureActivity}和{@link ScannerView}都实现了该接口，
+ * {@link CaptureActivityHandler}、{@link DecodeSession}和{@link DecodeHandler}只通过它来访问相机和界面，
+ * 这样解码流程就不再依赖于某一个具体的Activity。
+ */
+interface ScanHost {
+
+  Context getContext();
+
+  CameraManager getCameraManager();
+
+  /**
+   * @return 当前的{@link CaptureActivityHandler}，扫描会话没有开始时为null
+   */
+  Handler getCaptureHandler();
+
+  ViewfinderView getViewfinderView();
+
+  /**
+   * 扫描到结果后在主线程中调用
+   *
+   * @param rawResult 解码结果
+   * @param barcode 略缩图，没有时为null
+   * @param scaleFactor 略缩图相对于扫描框的缩放比例
+   */
+  void handleDecode(Result rawResult, Bitmap barcode, float scaleFactor);
+
+  void drawViewfinder();
+
+}
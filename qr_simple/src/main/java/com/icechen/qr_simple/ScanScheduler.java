@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+/**
+ * 扫描过程中所有延时任务共用的调度器：无操作自动关闭、定时对焦、震动等。
+ *
+ * 所有任务都在同一个{@link HandlerThread}中执行，等待中的任务只是它消息队列里的一条消息，
+ * 不会像{@code Thread.sleep()}那样占着线程池里的线程。每次调度返回一个{@link Task}，
+ * 取消时会直接从队列中移除，反复取消再调度也不会堆积。
+ *
+ * 任务应该很快执行完，需要等待的工作拆成几个延时任务。
+ */
+public final class ScanScheduler {
+
+  private static ScanScheduler instance;
+
+  private final Handler handler;
+
+  private ScanScheduler() {
+    HandlerThread thread = new HandlerThread(ScanScheduler.class.getSimpleName());
+    thread.start();
+    handler = new Handler(thread.getLooper());
+  }
+
+  /**
+   * 调度线程在第一次使用时启动，之后一直存在，空闲时不占用CPU
+   */
+  public static synchronized ScanScheduler get() {
+    if (instance == null) {
+      instance = new ScanScheduler();
+    }
+    return instance;
+  }
+
+  /**
+   * 尽快在调度线程中执行
+   */
+  public Task execute(Runnable runnable) {
+    return schedule(runnable, 0L);
+  }
+
+  /**
+   * 在调度线程中延时执行
+   *
+   * @param runnable 要执行的任务
+   * @param delayMillis 延时，毫秒
+   * @return 用来取消这次调度
+   */
+  public Task schedule(Runnable runnable, long delayMillis) {
+    Task task = new Task(handler, runnable);
+    handler.postDelayed(task, delayMillis);
+    return task;
+  }
+
+  /**
+   * 一次调度，可以在任何线程中取消
+   */
+  public static final class Task implements Runnable {
+
+    private final Handler handler;
+    private final Runnable runnable;
+    private volatile boolean cancelled;
+
+    private Task(Handler handler, Runnable runnable) {
+      this.handler = handler;
+      this.runnable = runnable;
+    }
+
+    /**
+     * 取消还没有开始执行的任务，已经在执行的任务不会被打断
+     */
+    public void cancel() {
+      cancelled = true;
+      handler.removeCallbacks(this);
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    @Override
+    public void run() {
+      if (!cancelled) {
+        runnable.run();
+      }
+    }
+  }
+
+}
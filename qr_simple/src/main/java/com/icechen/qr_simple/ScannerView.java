@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.preference.PreferenceManager;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.widget.FrameLayout;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+import com.icechen.qr_simple.camera.CameraManager;
+import com.icechen.qr_simple.camera.CameraSessionHolder;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 可以直接嵌入到界面中的扫描控件。
+ *
+ * 和{@link CaptureActivity}不同，扫描到结果后相机和{@link DecodeSession}都不会关闭，
+ * 结果通过{@link OnScanListener}回调出去，然后继续扫描下一个，省去了每次启动Activity、打开相机和
+ * 通过Intent回传结果的开销。宿主需要在自己的onResume()/onPause()中调用{@link #resume()}/{@link #pause()}。
+ */
+public final class ScannerView extends FrameLayout implements ScanHost, SurfaceHolder.Callback {
+
+  private static final String TAG = ScannerView.class.getSimpleName();
+
+  private static final long DEFAULT_SCAN_DELAY_MS = 1000L;
+
+  /**
+   * 扫描结果回调，在主线程中调用
+   */
+  public interface OnScanListener {
+
+    /**
+     * @param result 解码结果
+     * @param barcode 略缩图，可能为null
+     */
+    void onScan(Result result, Bitmap barcode);
+  }
+
+  private final SurfaceView surfaceView;
+  private final ViewfinderView viewfinderView;
+  private final BeepManager beepManager;
+  private CameraManager cameraManager;
+  private CaptureActivityHandler handler;
+  private OnScanListener onScanListener;
+  private boolean hasSurface;
+  private boolean resumed;
+  private long scanDelayMs = DEFAULT_SCAN_DELAY_MS;
+  private Collection<BarcodeFormat> decodeFormats;
+  private Map<DecodeHintType,?> decodeHints;
+  private String characterSet;
+
+  public ScannerView(Context context) {
+    this(context, null);
+  }
+
+  public ScannerView(Context context, AttributeSet attrs) {
+    super(context, attrs);
+    surfaceView = new SurfaceView(context);
+    addView(surfaceView, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+    viewfinderView = new ViewfinderView(context, null);
+    addView(viewfinderView, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+    PreferenceManager.setDefaultValues(context, R.xml.preferences, false);
+    beepManager = new BeepManager(context);
+  }
+
+  public void setOnScanListener(OnScanListener onScanListener) {
+    this.onScanListener = onScanListener;
+  }
+
+  /**
+   * @param scanDelayMs 扫描到结果后，等待多久开始扫描下一个；小于0表示不自动继续，需要调用{@link #resumeScanning()}
+   */
+  public void setScanDelay(long scanDelayMs) {
+    this.scanDelayMs = scanDelayMs;
+  }
+
+  /**
+   * 设置解码格式，下一次{@link #resume()}时生效；null表示使用偏好设置中的格式
+   */
+  public void setDecodeFormats(Collection<BarcodeFormat> decodeFormats) {
+    this.decodeFormats = decodeFormats;
+  }
+
+  /**
+   * 设置解码指示，下一次{@link #resume()}时生效
+   */
+  public void setDecodeHints(Map<DecodeHintType,?> decodeHints) {
+    this.decodeHints = decodeHints;
+  }
+
+  public void setCharacterSet(String characterSet) {
+    this.characterSet = characterSet;
+  }
+
+  /**
+   * 打开相机并开始扫描，在宿主的onResume()中调用
+   */
+  public void resume() {
+    if (resumed) {
+      return;
+    }
+    resumed = true;
+    cameraManager = CameraSessionHolder.get().acquire(getContext());
+    viewfinderView.setCameraManager(cameraManager);
+    beepManager.updatePrefs();
+    //没有InactivityTimer，只在开始时读一次电源状态
+    Intent battery = getContext().getApplicationContext()
+        .registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+    if (battery != null) {
+      cameraManager.setBatteryPowered(battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, -1) <= 0);
+    }
+    handler = null;
+
+    SurfaceHolder surfaceHolder = surfaceView.getHolder();
+    if (hasSurface) {
+      initCamera(surfaceHolder);
+    } else {
+      surfaceHolder.addCallback(this);
+    }
+  }
+
+  /**
+   * 停止扫描并关闭相机，在宿主的onPause()中调用
+   */
+  public void pause() {
+    if (!resumed) {
+      return;
+    }
+    resumed = false;
+    if (handler != null) {
+      handler.quitSynchronously();
+      handler = null;
+    }
+    beepManager.close();
+    //宿主Activity不是正在结束的话，保留相机一段时间
+    Context context = getContext();
+    boolean finishing = context instanceof Activity && ((Activity) context).isFinishing();
+    CameraSessionHolder.get().release(cameraManager, !finishing);
+    if (!hasSurface) {
+      surfaceView.getHolder().removeCallback(this);
+    }
+  }
+
+  /**
+   * 手动继续扫描下一个，一般在{@link #setScanDelay(long)}设为负数时使用
+   */
+  public void resumeScanning() {
+    if (handler != null) {
+      handler.removeMessages(R.id.restart_preview);
+      handler.sendEmptyMessage(R.id.restart_preview);
+    }
+  }
+
+  @Override
+  public CameraManager getCameraManager() {
+    return cameraManager;
+  }
+
+  @Override
+  public Handler getCaptureHandler() {
+    return handler;
+  }
+
+  @Override
+  public ViewfinderView getViewfinderView() {
+    return viewfinderView;
+  }
+
+  @Override
+  public void handleDecode(Result rawResult, Bitmap barcode, float scaleFactor) {
+    //连续扫描时短时间内的多个结果只提示一次
+    beepManager.playBeepSoundAndVibrate();
+    OnScanListener listener = onScanListener;
+    if (listener != null) {
+      listener.onScan(rawResult, barcode);
+    }
+    if (scanDelayMs >= 0L && handler != null) {
+      handler.sendEmptyMessageDelayed(R.id.restart_preview, scanDelayMs);
+    }
+  }
+
+  @Override
+  public void drawViewfinder() {
+    viewfinderView.drawViewfinder();
+  }
+
+  @Override
+  public void surfaceCreated(SurfaceHolder holder) {
+    if (!hasSurface) {
+      hasSurface = true;
+      if (resumed) {
+        initCamera(holder);
+      }
+    }
+  }
+
+  @Override
+  public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+
+  }
+
+  @Override
+  public void surfaceDestroyed(SurfaceHolder holder) {
+    hasSurface = false;
+  }
+
+  private void initCamera(SurfaceHolder surfaceHolder) {
+    if (cameraManager.isOpen() && !cameraManager.isParked()) {
+      Log.w(TAG, "initCamera() while already open -- late SurfaceView callback?");
+      return;
+    }
+    try {
+      cameraManager.openDriver(surfaceHolder);
+      if (handler == null) {
+        handler = new CaptureActivityHandler(this, decodeFormats, decodeHints, characterSet, cameraManager);
+      }
+    } catch (IOException ioe) {
+      Log.w(TAG, ioe);
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Unexpected error initializing camera", e);
+    }
+  }
+
+}
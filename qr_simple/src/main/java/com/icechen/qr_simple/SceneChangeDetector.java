@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * 判断画面是否变化。只在亮度数据上均匀取{@link #GRID_WIDTH}x{@link #GRID_HEIGHT}个采样点，
+ * 和参考帧逐点比较，比较前先去掉两帧整体亮度的差别，自动曝光的缓慢调整不算变化。
+ *
+ * 参考帧只在检测到变化时更新，所以缓慢移动的画面累积到足够的差别后也会被发现。
+ * 同一个对象不能在多个线程中同时使用。
+ */
+final class SceneChangeDetector {
+
+  static final int GRID_WIDTH = 32;
+  static final int GRID_HEIGHT = 24;
+  //去掉整体亮度差别后，平均每个采样点的亮度差超过它就认为画面变化了
+  private static final int CHANGE_THRESHOLD = 6;
+
+  private static final int SAMPLES = GRID_WIDTH * GRID_HEIGHT;
+
+  private int[] reference = new int[SAMPLES];
+  private int[] current = new int[SAMPLES];
+  private byte[] row;
+  private boolean hasReference;
+  private int referenceWidth;
+  private int referenceHeight;
+
+  /**
+   * 采样这一帧并和参考帧比较，变化了就把它作为新的参考帧
+   *
+   * @param source 这一帧的亮度数据
+   * @return 画面是否变化，第一帧和尺寸改变时总是true
+   */
+  boolean update(LuminanceSource source) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    sample(source, width, height);
+    boolean changed = !hasReference || width != referenceWidth || height != referenceHeight ||
+        difference() > CHANGE_THRESHOLD * (long) SAMPLES * SAMPLES;
+    if (changed) {
+      int[] temp = reference;
+      reference = current;
+      current = temp;
+      referenceWidth = width;
+      referenceHeight = height;
+      hasReference = true;
+    }
+    return changed;
+  }
+
+  /**
+   * 丢掉参考帧，下一帧一定算作变化
+   */
+  void reset() {
+    hasReference = false;
+  }
+
+  private void sample(LuminanceSource source, int width, int height) {
+    int[] samples = current;
+    int offset = 0;
+    for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+      int y = (2 * gy + 1) * height / (2 * GRID_HEIGHT);
+      row = source.getRow(y, row);
+      for (int gx = 0; gx < GRID_WIDTH; gx++) {
+        int x = (2 * gx + 1) * width / (2 * GRID_WIDTH);
+        //相邻两个像素取平均，减小噪点的影响
+        int next = x + 1 < width ? x + 1 : x;
+        samples[offset++] = (row[x] & 0xff) + (row[next] & 0xff);
+      }
+    }
+  }
+
+  /**
+   * @return 去掉整体亮度差别后每个采样点的平均亮度差，放大了SAMPLES * SAMPLES倍以避免除法
+   */
+  private long difference() {
+    int[] samples = current;
+    int[] previous = reference;
+    long sumDelta = 0;
+    for (int i = 0; i < SAMPLES; i++) {
+      sumDelta += samples[i] - previous[i];
+    }
+    long total = 0;
+    for (int i = 0; i < SAMPLES; i++) {
+      long delta = (long) (samples[i] - previous[i]) * SAMPLES - sumDelta;
+      total += delta < 0 ? -delta : delta;
+    }
+    //每个采样点是两个像素的和，再除以2才是亮度差
+    return total / 2;
+  }
+
+}
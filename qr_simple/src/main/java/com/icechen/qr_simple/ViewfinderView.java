@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.icechen.qr_simple.camera.CameraManager;
+import com.icechen.qr_simple.camera.ScanGeometry;
 
 /**
  * This view is overlaid on top of the com.icechen.qr_simple.camera preview. It adds the viewfinder rectangle and partial
@@ -84,13 +85,12 @@ public final class ViewfinderView extends View {
     if (cameraManager == null) {
       return; // not ready yet, early draw before done configuring
     }
-    //获得CameraManager中定义的扫描框
-    Rect frame = cameraManager.getFramingRect();
-    //获得CameraManager的预览框的矩形
-    Rect previewFrame = cameraManager.getFramingRectInPreview();    
-    if (frame == null || previewFrame == null) {
+    //扫描框和预览框取自同一个快照，不需要获取CameraManager的锁
+    ScanGeometry geometry = cameraManager.getGeometry();
+    if (geometry == null) {
       return;
     }
+    Rect frame = geometry.getFramingRect();
     int width = canvas.getWidth();
     int height = canvas.getHeight();
 
@@ -113,8 +113,8 @@ public final class ViewfinderView extends View {
       int middle = frame.height() / 2 + frame.top;
       canvas.drawRect(frame.left + 2, middle - 1, frame.right - 1, middle + 2, paint);
 
-      float scaleX = frame.width() / (float) previewFrame.width();
-      float scaleY = frame.height() / (float) previewFrame.height();
+      float scaleX = geometry.getScaleX();
+      float scaleY = geometry.getScaleY();
 
 
       List<ResultPoint> currentPossible = possibleResultPoints;
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple;
+
+import com.google.zxing.LuminanceSource;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+/**
+ * 一遍扫描扫描框的Y平面，同时生成1/2和1/4两级缩小的亮度数据，以及用于显示的ARGB略缩图。
+ *
+ * 缩小使用的是盒式滤波：1/2级的每个点是原图2x2像素的平均值，1/4级是4x4像素的平均值，
+ * 比隔点采样更平滑，也顺带降低了噪声。略缩图就是1/2级的灰度图。
+ * 所有输出都写在复用的数组里，尺寸不变时不会再分配内存。检测阶段在{@link #getQuarter()}上判断画面变化和寻找候选区域，
+ * 略缩图只在解码成功时用到，第一次调用{@link #getThumbnail()}时才从1/2级生成。
+ *
+ * 同一个对象只能在一个线程中使用，检测线程、解码线程和慢通道各有一个。
+ */
+final class YPlaneDownsampler {
+
+  private int width;
+  private int height;
+  private byte[] half;
+  private byte[] quarter;
+  private int[] thumbnail;
+  private boolean thumbnailValid;
+  //1/4级当前这一行的累加值，每个元素是4x4个像素的和
+  private int[] quarterSums;
+  private FrameLuminanceSource halfSource;
+  private FrameLuminanceSource quarterSource;
+
+  /**
+   * 对source当前的这一帧生成所有输出
+   */
+  void downsample(LuminanceSource source) {
+    int sourceWidth = source.getWidth();
+    int sourceHeight = source.getHeight();
+    if (sourceWidth != width || sourceHeight != height) {
+      allocate(sourceWidth, sourceHeight);
+    }
+    byte[] luminances = source.getMatrix();
+    int halfWidth = width / 2;
+    int halfHeight = height / 2;
+    int quarterWidth = width / 4;
+    for (int x = 0; x < quarterWidth; x++) {
+      quarterSums[x] = 0;
+    }
+    for (int y = 0; y < halfHeight; y++) {
+      int top = 2 * y * width;
+      int bottom = top + width;
+      int outputOffset = y * halfWidth;
+      for (int x = 0; x < halfWidth; x++) {
+        int sum = (luminances[top + 2 * x] & 0xFF) + (luminances[top + 2 * x + 1] & 0xFF) +
+                  (luminances[bottom + 2 * x] & 0xFF) + (luminances[bottom + 2 * x + 1] & 0xFF);
+        int value = (sum + 2) >> 2;
+        half[outputOffset + x] = (byte) value;
+        if (x < 2 * quarterWidth) {
+          quarterSums[x >> 1] += sum;
+        }
+      }
+      if ((y & 1) == 1) {
+        //凑齐了两行1/2级，也就是四行原图
+        int quarterOffset = (y >> 1) * quarterWidth;
+        for (int x = 0; x < quarterWidth; x++) {
+          quarter[quarterOffset + x] = (byte) ((quarterSums[x] + 8) >> 4);
+          quarterSums[x] = 0;
+        }
+      }
+    }
+    halfSource.setFrame(half, halfWidth, halfHeight, 0, 0);
+    quarterSource.setFrame(quarter, quarterWidth, height / 4, 0, 0);
+    thumbnailValid = false;
+  }
+
+  private void allocate(int width, int height) {
+    this.width = width;
+    this.height = height;
+    int halfWidth = width / 2;
+    int halfHeight = height / 2;
+    int quarterWidth = width / 4;
+    int quarterHeight = height / 4;
+    half = new byte[halfWidth * halfHeight];
+    quarter = new byte[quarterWidth * quarterHeight];
+    thumbnail = new int[halfWidth * halfHeight];
+    quarterSums = new int[quarterWidth];
+    halfSource = new FrameLuminanceSource(halfWidth, halfHeight);
+    quarterSource = new FrameLuminanceSource(quarterWidth, quarterHeight);
+  }
+
+  /**
+   * @return 1/2级的亮度数据，每次返回同一个对象
+   */
+  FrameLuminanceSource getHalf() {
+    return halfSource;
+  }
+
+  /**
+   * @return 1/4级的亮度数据，每次返回同一个对象
+   */
+  FrameLuminanceSource getQuarter() {
+    return quarterSource;
+  }
+
+  /**
+   * @return ARGB格式的略缩图，下一次{@link #downsample}以后再调用时会被覆盖
+   */
+  int[] getThumbnail() {
+    if (!thumbnailValid) {
+      for (int i = 0; i < half.length; i++) {
+        thumbnail[i] = 0xFF000000 | ((half[i] & 0xFF) * 0x00010101);
+      }
+      thumbnailValid = true;
+    }
+    return thumbnail;
+  }
+
+  int getThumbnailWidth() {
+    return width / 2;
+  }
+
+  int getThumbnailHeight() {
+    return height / 2;
+  }
+
+}
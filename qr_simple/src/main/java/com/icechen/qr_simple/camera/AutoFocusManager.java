@@ -19,15 +19,14 @@ package com.icechen.qr_simple.camera;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.hardware.Camera;
-import android.os.AsyncTask;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
 import com.icechen.qr_simple.PreferencesActivity;
+import com.icechen.qr_simple.ScanScheduler;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 自动对焦管理器，实现了相机了自动对焦的回调方法
@@ -52,11 +51,18 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
   private boolean focusing;
   private final boolean useAutoFocus;
   private final Camera camera;
-  private AsyncTask<?,?,?> outstandingTask;
+  private final Runnable focusTask;
+  private ScanScheduler.Task outstandingTask;
 
   //自动对焦管理器构造方法
   public AutoFocusManager(Context context, Camera camera) {
     this.camera = camera;
+    focusTask = new Runnable() {
+      @Override
+      public void run() {
+        start();
+      }
+    };
     SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
     String currentFocusMode = camera.getParameters().getFocusMode();
     //判断是否启用了自动对焦
@@ -87,13 +93,8 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
    */
   private synchronized void autoFocusAgainLater() {
     if (!stopped && outstandingTask == null) {
-      AutoFocusTask newTask = new AutoFocusTask();
-      try {
-        newTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-        outstandingTask = newTask;
-      } catch (RejectedExecutionException ree) {
-        Log.w(TAG, "Could not request auto focus", ree);
-      }
+      //间隔一段时间后在调度线程中再次对焦，等待期间不占用线程
+      outstandingTask = ScanScheduler.get().schedule(focusTask, AUTO_FOCUS_INTERVAL_MS);
     }
   }
 
@@ -123,17 +124,12 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
   }
 
   /**
-   * 该方法用于停止计时线程
+   * 该方法用于取消等待中的对焦任务
    */
   private synchronized void cancelOutstandingTask() {
     if (outstandingTask != null) {
-      //如果计时线程存在
-      if (outstandingTask.getStatus() != AsyncTask.Status.FINISHED) {
-        //如果计时线程的状态不是FINISHED
-        //让线程取消
-        outstandingTask.cancel(true);
-      }
-      //需要把线程变量指向空，释放内存
+      //从调度线程的队列中移除还没执行的对焦任务
+      outstandingTask.cancel();
       outstandingTask = null;
     }
   }
@@ -149,7 +145,7 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
       //如果当前处于获得焦点状态
 
         /**
-         * 调用{@link #cancelOutstandingTask()}来停止计时线程
+         * 调用{@link #cancelOutstandingTask()}来取消等待中的对焦任务
          */
       cancelOutstandingTask();
       // Doesn't hurt to call this even if not focusing
@@ -163,17 +159,4 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
     }
   }
 
-  private final class AutoFocusTask extends AsyncTask<Object,Object,Object> {
-    @Override
-    protected Object doInBackground(Object... voids) {
-      try {
-        Thread.sleep(AUTO_FOCUS_INTERVAL_MS);
-      } catch (InterruptedException e) {
-        // continue
-      }
-      start();
-      return null;
-    }
-  }
-
 }
@@ -39,6 +39,10 @@ final class CameraConfigurationManager {
 
   private static final String TAG = "CameraConfiguration";
 
+  //省电模式下画面空闲时的预览帧率范围
+  private static final int IDLE_MIN_FPS = 5;
+  private static final int IDLE_MAX_FPS = 10;
+
   private final Context context;
   private int cwNeededRotation;
   private int cwRotationFromDisplayToCamera;
@@ -46,6 +50,8 @@ final class CameraConfigurationManager {
   private Point cameraResolution;
   private Point bestPreviewSize;
   private Point previewSizeOnScreen;
+  //配置完成后的预览帧率范围，退出空闲时恢复到它
+  private int[] activeFpsRange;
 
  public CameraConfigurationManager(Context context) {
     this.context = context;
@@ -181,9 +187,8 @@ final class CameraConfigurationManager {
         safeMode);
 
     if (!safeMode) {
-      if (prefs.getBoolean(PreferencesActivity.KEY_INVERT_SCAN, false)) {
-        CameraConfigurationUtils.setInvertColor(parameters);
-      }
+      // KEY_INVERT_SCAN is handled by the decoder (see InvertedBinarizer), not by the camera's
+      // negative color effect, which most devices don't support.
 
       if (!prefs.getBoolean(PreferencesActivity.KEY_DISABLE_BARCODE_SCENE_MODE, true)) {
         CameraConfigurationUtils.setBarcodeSceneMode(parameters);
@@ -195,6 +200,11 @@ final class CameraConfigurationManager {
         CameraConfigurationUtils.setMetering(parameters);
       }
 
+      if (prefs.getBoolean(PreferencesActivity.KEY_POWER_SAVING, true)) {
+        //扫码用不到驱动默认的30fps，限制在10~20fps
+        CameraConfigurationUtils.setBestPreviewFPS(parameters);
+      }
+
     }
 
     parameters.setPreviewSize(bestPreviewSize.x, bestPreviewSize.y);
@@ -211,6 +221,8 @@ final class CameraConfigurationManager {
       bestPreviewSize.x = afterSize.width;
       bestPreviewSize.y = afterSize.height;
     }
+    activeFpsRange = new int[2];
+    afterParameters.getPreviewFpsRange(activeFpsRange);
   }
 
   Point getBestPreviewSize() {
@@ -256,6 +268,35 @@ final class CameraConfigurationManager {
     camera.setParameters(parameters);
   }
 
+  /**
+   * 切换空闲和正常的预览帧率范围
+   *
+   * @param idle true时降到{@link #IDLE_MIN_FPS}~{@link #IDLE_MAX_FPS}，false时恢复配置完成时的范围
+   */
+  void setIdleFrameRate(Camera camera, boolean idle) {
+    Camera.Parameters parameters = camera.getParameters();
+    if (idle) {
+      CameraConfigurationUtils.setBestPreviewFPS(parameters, IDLE_MIN_FPS, IDLE_MAX_FPS);
+    } else if (activeFpsRange != null) {
+      parameters.setPreviewFpsRange(activeFpsRange[0], activeFpsRange[1]);
+    } else {
+      return;
+    }
+    camera.setParameters(parameters);
+  }
+
+  /**
+   * 提高或恢复曝光补偿，不改变闪光灯
+   *
+   * @param boost true时设为最大的曝光补偿，false时恢复为0
+   */
+  void setExposureBoost(Camera camera, boolean boost) {
+    Camera.Parameters parameters = camera.getParameters();
+    //setBestExposure在"开灯"时把补偿设为0，"关灯"时提高补偿
+    CameraConfigurationUtils.setBestExposure(parameters, !boost);
+    camera.setParameters(parameters);
+  }
+
   private void initializeTorch(Camera.Parameters parameters, SharedPreferences prefs, boolean safeMode) {
     boolean currentSetting = FrontLightMode.readPref(prefs) == FrontLightMode.ON;
     doSetTorch(parameters, currentSetting, safeMode);
@@ -17,10 +17,12 @@
 package com.icechen.qr_simple.camera;
 
 import android.content.Context;
+import android.graphics.ImageFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.hardware.Camera;
 import android.os.Handler;
+import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
@@ -29,6 +31,7 @@ import com.icechen.qr_simple.CaptureActivity;
 import com.icechen.qr_simple.camera.open.OpenCamera;
 import com.icechen.qr_simple.camera.open.OpenCameraInterface;
 
+import java.io.File;
 import java.io.IOException;
 
 
@@ -48,30 +51,57 @@ public final class CameraManager {
   private static final int MIN_FRAME_HEIGHT = 240;
   private static final int MAX_FRAME_WIDTH = 1200; // = 5/8 * 1920
   private static final int MAX_FRAME_HEIGHT = 675; // = 5/8 * 1080
+  //相机和解码线程之间的队列长度，解码比相机慢时只保留最新的两帧
+  private static final int FRAME_RING_CAPACITY = 2;
 
   private final Context context;
   private final CameraConfigurationManager configManager;
-  private OpenCamera camera;
+  //camera、previewing和frameRing在锁内修改，returnBuffer不加锁读取
+  private volatile OpenCamera camera;
   private AutoFocusManager autoFocusManager;
   private Rect framingRect;
-  private Rect framingRectInPreview;
+  //扫描框和相机配置的快照，变化时整体替换，读取时不需要加锁
+  private volatile ScanGeometry geometry;
   private boolean initialized;
-  private boolean previewing;
+  private volatile boolean previewing;
   private int requestedCameraId = OpenCameraInterface.NO_REQUESTED_CAMERA;
   private int requestedFramingRectWidth;
   private int requestedFramingRectHeight;
   /**
-   * Preview frames are delivered here, which we pass on to the registered handler. Make sure to
-   * clear the handler so it will only receive one message.
+   * Preview frames are delivered here and put into the frame ring. The registered handler is woken
+   * once per request, see {@link PreviewCallback}.
    */
   private final PreviewCallback previewCallback;
+  //这次预览的帧队列，每次开始预览时重新创建，旧队列还回来的缓冲区不再交给相机
+  private volatile FrameRing frameRing;
+  private final FrameRing.Recycler bufferRecycler;
+  private FrameRecorder frameRecorder;
+  //回放录制好的帧时，用它代替相机产生预览帧
+  private volatile FrameReplayer frameReplayer;
+  private final PowerModeManager powerModeManager;
+  //用户手动开关过闪光灯以后，不再自动控制它
+  private boolean torchSetManually;
+  //打开相机以后是否改过闪光灯和曝光补偿，暂停时恢复
+  private boolean torchChanged;
+  private boolean exposureBoosted;
+  //暂停时相机没有释放，重新连接时如果屏幕方向和尺寸都没变就不用重新配置参数
+  private boolean parked;
+  private int parkedRotation;
+  private Point parkedScreenResolution;
 
   public CameraManager(Context context) {
     this.context = context;
     //new一个CameraConfigurationManager对象
     this.configManager = new CameraConfigurationManager(context);
     //new一个预览回调对象
-    previewCallback = new PreviewCallback(configManager);
+    previewCallback = new PreviewCallback();
+    bufferRecycler = new FrameRing.Recycler() {
+      @Override
+      public void recycle(FrameRing ring, byte[] buffer) {
+        returnBuffer(ring, buffer);
+      }
+    };
+    powerModeManager = new PowerModeManager(context, configManager);
   }
   
   /**
@@ -82,6 +112,8 @@ public final class CameraManager {
    */
   public synchronized void openDriver(SurfaceHolder holder) throws IOException {
     OpenCamera theCamera = camera;
+    boolean wasParked = parked;
+    parked = false;
     if (theCamera == null) {
       //如果OpenCamera对象为空，那么就打开一个OpenCamera
       theCamera = OpenCameraInterface.open(requestedCameraId);
@@ -102,9 +134,17 @@ public final class CameraManager {
         requestedFramingRectHeight = 0;
       }
     }
+    publishGeometry();
 
     //获得OpenCamera中的Camera
     Camera cameraObject = theCamera.getCamera();
+    if (wasParked && parkedRotation == configManager.getCWNeededRotation() &&
+        parkedScreenResolution.equals(configManager.getScreenResolution())) {
+      //保留下来的相机，参数还是配置好的，只需要连接到新的SurfaceView
+      Log.i(TAG, "Reattaching retained camera");
+      cameraObject.setPreviewDisplay(holder);
+      return;
+    }
     //获得Camera的参数
     Camera.Parameters parameters = cameraObject.getParameters();
     String parametersFlattened = parameters == null ? null : parameters.flatten(); // Save these, temporarily
@@ -146,6 +186,9 @@ public final class CameraManager {
    * 关闭相机
    */
   public synchronized void closeDriver() {
+    stopRecording();
+    stopReplay();
+    powerModeManager.stop();
     if (camera != null) {
       //如果相机存在，释放相机
       camera.getCamera().release();
@@ -153,8 +196,59 @@ public final class CameraManager {
       // Make sure to clear these each time we close the com.icechen.qr_simple.camera, so that any scanning rect
       // requested by intent is forgotten.
       framingRect = null;
-      framingRectInPreview = null;
+      geometry = null;
+      torchSetManually = false;
+      torchChanged = false;
+      exposureBoosted = false;
+      parked = false;
+    }
+  }
+
+  /**
+   * 停止预览但不释放相机，之后再调用{@link #openDriver}连接到新的SurfaceHolder，省去打开和配置相机的时间。
+   * 自动或手动改过的闪光灯和曝光补偿会先恢复，见{@link CameraSessionHolder}
+   */
+  synchronized void park() {
+    stopRecording();
+    stopReplay();
+    stopPreview();
+    OpenCamera theCamera = camera;
+    if (theCamera == null) {
+      return;
+    }
+    try {
+      if (torchChanged) {
+        boolean torchOn = FrontLightMode.readPref(PreferenceManager.getDefaultSharedPreferences(context)) ==
+            FrontLightMode.ON;
+        configManager.setTorch(theCamera.getCamera(), torchOn);
+      }
+      if (exposureBoosted) {
+        configManager.setExposureBoost(theCamera.getCamera(), false);
+      }
+    } catch (RuntimeException re) {
+      Log.w(TAG, "Could not restore camera parameters", re);
     }
+    torchSetManually = false;
+    torchChanged = false;
+    exposureBoosted = false;
+    parkedRotation = configManager.getCWNeededRotation();
+    parkedScreenResolution = new Point(configManager.getScreenResolution());
+    //重新连接时重新计算扫描框，Intent指定的扫描框尺寸也会重新生效
+    initialized = false;
+    framingRect = null;
+    geometry = null;
+    parked = true;
+  }
+
+  Context getContext() {
+    return context;
+  }
+
+  /**
+   * 相机是否处于{@link #park()}之后、还没有重新连接的状态
+   */
+  public synchronized boolean isParked() {
+    return parked;
   }
 
   /**
@@ -163,9 +257,15 @@ public final class CameraManager {
   public synchronized void startPreview() {
     OpenCamera theCamera = camera;
     if (theCamera != null && !previewing) {
+      Camera rawCamera = theCamera.getCamera();
+      frameRing = newFrameRing(rawCamera);
+      rawCamera.setPreviewCallbackWithBuffer(previewCallback);
+      previewCallback.setFrameRing(frameRing);
       //让相机开始显示画面
-      theCamera.getCamera().startPreview();
+      rawCamera.startPreview();
       previewing = true;
+      frameRing.recycleAll();
+      powerModeManager.start(theCamera.getCamera());
       //让相机对焦
       autoFocusManager = new AutoFocusManager(context, theCamera.getCamera());
     }
@@ -181,10 +281,17 @@ public final class CameraManager {
       autoFocusManager = null;
     }
     if (camera != null && previewing) {
+      //先换掉队列，之后还回来的缓冲区直接丢掉
+      FrameRing ring = frameRing;
+      frameRing = null;
+      previewing = false;
+      powerModeManager.stop();
+      camera.getCamera().setPreviewCallbackWithBuffer(null);
       //让相机停止显示画面
       camera.getCamera().stopPreview();
-      previewCallback.setHandler(null, 0);
-      previewing = false;
+      previewCallback.setFrameRing(null);
+      Log.i(TAG, "Published " + ring.getPublishedFrames() + " frames, overwritten " +
+          ring.getOverwrittenFrames() + " before decoding");
     }
   }
 
@@ -194,6 +301,35 @@ public final class CameraManager {
    * @param newSetting if {@code true}, light should be turned on if currently off. And vice versa.
    */
   public synchronized void setTorch(boolean newSetting) {
+    torchSetManually = true;
+    doSetTorch(newSetting);
+  }
+
+  /**
+   * 根据画面亮度自动开关闪光灯，用户手动开关过以后不再生效
+   *
+   * @param newSetting 是否打开闪光灯
+   */
+  public synchronized void setAutoTorch(boolean newSetting) {
+    if (!torchSetManually) {
+      doSetTorch(newSetting);
+    }
+  }
+
+  /**
+   * 提高或恢复曝光补偿，用于画面偏暗但不打开闪光灯的情况
+   *
+   * @param boost true时提高曝光补偿
+   */
+  public synchronized void setExposureBoost(boolean boost) {
+    OpenCamera theCamera = camera;
+    if (theCamera != null) {
+      configManager.setExposureBoost(theCamera.getCamera(), boost);
+      exposureBoosted = boost;
+    }
+  }
+
+  private void doSetTorch(boolean newSetting) {
     OpenCamera theCamera = camera;
     if (theCamera != null) {
       if (newSetting != configManager.getTorchState(theCamera.getCamera())) {
@@ -203,6 +339,7 @@ public final class CameraManager {
           autoFocusManager = null;
         }
         configManager.setTorch(theCamera.getCamera(), newSetting);
+        torchChanged = true;
         if (wasAutoFocusManager) {
           autoFocusManager = new AutoFocusManager(context, theCamera.getCamera());
           autoFocusManager.start();
@@ -212,25 +349,98 @@ public final class CameraManager {
   }
 
   /**
-   * A single preview frame will be returned to the handler supplied. The data will arrive as byte[]
-   * in the message.obj field, with width and height encoded as message.arg1 and message.arg2,
-   * respectively.
+   * A single message will be sent to the handler supplied once a preview frame is available. From the
+   * camera, message.obj is the {@link FrameRing} to take the newest frame from; during replay, the data
+   * arrives as byte[] in message.obj, with width and height encoded as message.arg1 and message.arg2.
    *
    * @param handler The handler to send the message to.
    * @param message The what field of the message to be sent.
    */
   public synchronized void requestPreviewFrame(Handler handler, int message) {
+    FrameReplayer replayer = frameReplayer;
+    if (replayer != null) {
+      if (previewing) {
+        replayer.requestFrame(handler, message);
+      }
+      return;
+    }
+    if (camera != null && previewing) {
+      //省电模式空闲时推迟这次请求
+      long delay = powerModeManager.onFrameRequested();
+      if (delay > 0L) {
+        final Handler theHandler = handler;
+        final int theMessage = message;
+        powerModeManager.postDelayed(new Runnable() {
+          @Override
+          public void run() {
+            requestCameraFrame(theHandler, theMessage);
+          }
+        }, delay);
+      } else {
+        requestCameraFrame(handler, message);
+      }
+    }
+  }
+
+  private synchronized void requestCameraFrame(Handler handler, int message) {
     OpenCamera theCamera = camera;
     if (theCamera != null && previewing) {
       /**
-       * 设置回调的Handler为{@link DecodeHandler}对象
+       * 设置回调的Handler为{@link DecodeHandler}对象，队列里已经有新帧时会立刻收到消息
        */
       previewCallback.setHandler(handler, message);
-      //设置预览回调
-      theCamera.getCamera().setOneShotPreviewCallback(previewCallback);
     }
   }
 
+  /**
+   * 按预览尺寸和格式分配这次预览的帧队列
+   */
+  private FrameRing newFrameRing(Camera rawCamera) {
+    Point resolution = configManager.getCameraResolution();
+    int bitsPerPixel = ImageFormat.getBitsPerPixel(rawCamera.getParameters().getPreviewFormat());
+    int bufferSize = resolution.x * resolution.y * bitsPerPixel / 8;
+    return new FrameRing(FRAME_RING_CAPACITY, bufferSize, resolution.x, resolution.y, bufferRecycler);
+  }
+
+  /**
+   * 把缓冲区还给相机，可以在相机回调和解码线程中调用。
+   * 不加锁：开关闪光灯、修改曝光时会持有锁等待相机，每一帧都要还缓冲区的线程不能跟着等
+   */
+  private void returnBuffer(FrameRing ring, byte[] buffer) {
+    OpenCamera theCamera = camera;
+    if (theCamera == null || !previewing || ring != frameRing) {
+      //预览已经停止或者换了新的队列，旧队列的缓冲区直接丢掉
+      return;
+    }
+    try {
+      theCamera.getCamera().addCallbackBuffer(buffer);
+    } catch (RuntimeException re) {
+      //检查之后相机刚好被停止或释放
+      Log.w(TAG, "Couldn't return preview buffer", re);
+    }
+  }
+
+  /**
+   * 画面有变化或者找到了可能的结果点，省电模式会恢复正常帧率。可以在任何线程调用
+   */
+  public void onScanActivity() {
+    powerModeManager.onActivity();
+  }
+
+  /**
+   * 设备是否在使用电池，只有使用电池时才会进入省电模式
+   */
+  public void setBatteryPowered(boolean onBattery) {
+    powerModeManager.setOnBattery(onBattery);
+  }
+
+  /**
+   * 当前的扫描框和相机配置，相机还没有配置好时为null。可以在任何线程调用，不会阻塞
+   */
+  public ScanGeometry getGeometry() {
+    return geometry;
+  }
+
   /**
    * Calculates the framing rect which the UI should draw to show the user where to place the
    * barcode. This target helps with alignment as well as forces the user to hold the device
@@ -238,17 +448,23 @@ public final class CameraManager {
    *
    * @return The rectangle to draw on screen in window coordinates.
    */
-  public synchronized Rect getFramingRect() {
-    if (framingRect == null) {
-      if (camera == null) {
-        return null;
-      }
-      Point screenResolution = configManager.getScreenResolution();
-      if (screenResolution == null) {
-        // Called early, before init even finished
-        return null;
-      }
+  public Rect getFramingRect() {
+    ScanGeometry theGeometry = geometry;
+    return theGeometry == null ? null : theGeometry.getFramingRect();
+  }
 
+  /**
+   * 根据相机配置和扫描框生成新的{@link ScanGeometry}并发布，需要持有锁
+   */
+  private void publishGeometry() {
+    Point screenResolution = configManager.getScreenResolution();
+    Point cameraResolution = configManager.getCameraResolution();
+    if (camera == null || screenResolution == null || cameraResolution == null) {
+      // Called early, before init even finished
+      geometry = null;
+      return;
+    }
+    if (framingRect == null) {
       //获得适合的尺寸
       int width = findDesiredDimensionInRange(screenResolution.x, MIN_FRAME_WIDTH, MAX_FRAME_WIDTH);
       int height = findDesiredDimensionInRange(screenResolution.y, MIN_FRAME_HEIGHT, MAX_FRAME_HEIGHT);
@@ -263,7 +479,14 @@ public final class CameraManager {
       framingRect = new Rect(leftOffset, topOffset, leftOffset + width, topOffset + height);
       Log.d(TAG, "Calculated framing rect: " + framingRect);
     }
-    return framingRect;
+    Rect rect = new Rect(framingRect);
+    //预览框尺寸 = 扫描框尺寸*相机分辨率/屏幕分辨率
+    rect.left = rect.left * cameraResolution.x / screenResolution.x;
+    rect.right = rect.right * cameraResolution.x / screenResolution.x;
+    rect.top = rect.top * cameraResolution.y / screenResolution.y;
+    rect.bottom = rect.bottom * cameraResolution.y / screenResolution.y;
+    geometry = new ScanGeometry(framingRect, rect, cameraResolution, screenResolution,
+                                configManager.getCWNeededRotation());
   }
 
   /**
@@ -297,32 +520,21 @@ public final class CameraManager {
    *
    * @return {@link Rect} expressing barcode scan area in terms of the preview size
    */
-  public synchronized Rect getFramingRectInPreview() {
-    if (framingRectInPreview == null) {
-      //获得扫描框大小
-      Rect framingRect = getFramingRect();
-      if (framingRect == null) {
-        return null;
-      }
-      Rect rect = new Rect(framingRect);
-      Point cameraResolution = configManager.getCameraResolution();
-      Point screenResolution = configManager.getScreenResolution();
-      if (cameraResolution == null || screenResolution == null) {
-        // Called early, before init even finished
-        return null;
-      }
-      //预览框尺寸 = 扫描框尺寸*相机分辨率/屏幕分辨率
-      rect.left = rect.left * cameraResolution.x / screenResolution.x;
-      rect.right = rect.right * cameraResolution.x / screenResolution.x;
-      rect.top = rect.top * cameraResolution.y / screenResolution.y;
-      rect.bottom = rect.bottom * cameraResolution.y / screenResolution.y;
-      //设置预览框大小
-      framingRectInPreview = rect;
-    }
-    return framingRectInPreview;
+  public Rect getFramingRectInPreview() {
+    ScanGeometry theGeometry = geometry;
+    return theGeometry == null ? null : theGeometry.getFramingRectInPreview();
+  }
+
+  /**
+   * 相机画面需要顺时针旋转多少度才和屏幕方向一致
+   *
+   * @return 0, 90, 180 或 270，相机还没有配置好时为0
+   */
+  public int getCWNeededRotation() {
+    ScanGeometry theGeometry = geometry;
+    return theGeometry == null ? 0 : theGeometry.getCWNeededRotation();
   }
 
-  
   /**
    * Allows third party apps to specify the com.icechen.qr_simple.camera ID, rather than determine
    * it automatically based on available cameras and their orientation.
@@ -330,6 +542,10 @@ public final class CameraManager {
    * @param cameraId com.icechen.qr_simple.camera ID of the com.icechen.qr_simple.camera to use. A negative value means "no preference".
    */
   public synchronized void setManualCameraId(int cameraId) {
+    if (parked && cameraId != requestedCameraId) {
+      //保留下来的不是要求的相机
+      closeDriver();
+    }
     requestedCameraId = cameraId;
   }
   
@@ -353,13 +569,62 @@ public final class CameraManager {
       int topOffset = (screenResolution.y - height) / 2;
       framingRect = new Rect(leftOffset, topOffset, leftOffset + width, topOffset + height);
       Log.d(TAG, "Calculated manual framing rect: " + framingRect);
-      framingRectInPreview = null;
+      publishGeometry();
     } else {
       requestedFramingRectWidth = width;
       requestedFramingRectHeight = height;
     }
   }
 
+  /**
+   * 把之后送去解码的预览帧录制到文件中，格式见{@link FrameRecording}。需要在{@link #openDriver}之后调用。
+   *
+   * @param file 录制文件
+   * @throws IOException 无法创建录制文件
+   */
+  public synchronized void startRecording(File file) throws IOException {
+    Point cameraResolution = configManager.getCameraResolution();
+    Rect rect = getFramingRectInPreview();
+    if (cameraResolution == null || rect == null) {
+      throw new IllegalStateException("Camera is not configured yet");
+    }
+    stopRecording();
+    FrameRecording.Header header = new FrameRecording.Header(
+        cameraResolution.x, cameraResolution.y, configManager.getCWNeededRotation(),
+        rect.left, rect.top, rect.width(), rect.height());
+    frameRecorder = new FrameRecorder(file, header);
+    previewCallback.setFrameRecorder(frameRecorder);
+  }
+
+  public synchronized void stopRecording() {
+    if (frameRecorder != null) {
+      previewCallback.setFrameRecorder(null);
+      frameRecorder.close();
+      frameRecorder = null;
+    }
+  }
+
+  /**
+   * 用录制好的帧代替相机画面送去解码，相机仍然需要打开，用来显示预览。
+   * 回放时使用录制时的扫描框。
+   *
+   * @param file 录制文件，见{@link FrameRecording}
+   * @param realTime true表示按录制时的速度回放，false表示解码完一帧马上送下一帧
+   * @throws IOException 无法读取录制文件
+   */
+  public synchronized void startReplay(File file, boolean realTime) throws IOException {
+    stopReplay();
+    frameReplayer = new FrameReplayer(file, realTime);
+  }
+
+  public synchronized void stopReplay() {
+    FrameReplayer replayer = frameReplayer;
+    if (replayer != null) {
+      frameReplayer = null;
+      replayer.close();
+    }
+  }
+
   /**
    * 该方法用于创建一个明亮的资源
    *
@@ -369,6 +634,13 @@ public final class CameraManager {
    * @return 返回一个二位色差明亮的资源
    */
   public PlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
+    FrameReplayer replayer = frameReplayer;
+    if (replayer != null) {
+      //回放时使用录制时的扫描框
+      FrameRecording.Header header = replayer.getHeader();
+      return new PlanarYUVLuminanceSource(data, width, height, header.cropLeft, header.cropTop,
+              header.cropWidth, header.cropHeight, false);
+    }
     Rect rect = getFramingRectInPreview();
     if (rect == null) {
       return null;
@@ -379,4 +651,45 @@ public final class CameraManager {
             rect.width(), rect.height(), false);
   }
 
+  /**
+   * 和{@link #buildLuminanceSource(byte[], int, int)}一样，但扫描框尺寸不变时复用reuse，不产生新的对象
+   *
+   * @param data 画面数据.
+   * @param width 图片的宽.
+   * @param height 图片的高
+   * @param reuse 上一帧使用的对象，可以为null
+   * @return 指向这一帧的亮度数据，和reuse不是同一个对象时说明扫描框的尺寸变了
+   */
+  public FrameLuminanceSource buildLuminanceSource(byte[] data, int width, int height,
+                                                   FrameLuminanceSource reuse) {
+    int left;
+    int top;
+    int cropWidth;
+    int cropHeight;
+    FrameReplayer replayer = frameReplayer;
+    if (replayer != null) {
+      //回放时使用录制时的扫描框
+      FrameRecording.Header header = replayer.getHeader();
+      left = header.cropLeft;
+      top = header.cropTop;
+      cropWidth = header.cropWidth;
+      cropHeight = header.cropHeight;
+    } else {
+      Rect rect = getFramingRectInPreview();
+      if (rect == null) {
+        return null;
+      }
+      left = rect.left;
+      top = rect.top;
+      cropWidth = rect.width();
+      cropHeight = rect.height();
+    }
+    FrameLuminanceSource source = reuse;
+    if (source == null || source.getWidth() != cropWidth || source.getHeight() != cropHeight) {
+      source = new FrameLuminanceSource(cropWidth, cropHeight);
+    }
+    source.setFrame(data, width, height, left, top);
+    return source;
+  }
+
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+/**
+ * 在Activity之外保留打开的相机。
+ *
+ * 旋转屏幕、短暂切换到别的应用时，Activity会经历onPause()/onResume()甚至被重新创建，
+ * 每次都重新打开和配置相机要花几百毫秒。暂停时把{@link CameraManager}交给这里，
+ * 它会停止预览但保持相机打开，在宽限期内恢复的话直接连接到新的SurfaceHolder；
+ * 超过宽限期、或者期间修改了偏好设置，相机就会被释放。
+ *
+ * 保留期间别的应用无法打开相机，所以宽限期不宜太长。所有方法都在主线程中调用。
+ */
+public final class CameraSessionHolder {
+
+  private static final String TAG = CameraSessionHolder.class.getSimpleName();
+
+  public static final long DEFAULT_GRACE_PERIOD_MS = 2000L;
+
+  private static CameraSessionHolder instance;
+
+  private final Handler handler;
+  private final Runnable closeTask;
+  //SharedPreferences只持有监听器的弱引用，这里必须保存着
+  private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener;
+  private SharedPreferences prefs;
+  private CameraManager retained;
+  private long gracePeriodMs = DEFAULT_GRACE_PERIOD_MS;
+
+  private CameraSessionHolder() {
+    handler = new Handler(Looper.getMainLooper());
+    closeTask = new Runnable() {
+      @Override
+      public void run() {
+        Log.i(TAG, "Grace period expired, closing retained camera");
+        closeRetained();
+      }
+    };
+    prefsListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+      @Override
+      public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        //相机参数是按偏好设置配置的，设置变了就重新打开
+        Log.i(TAG, "Preferences changed, closing retained camera");
+        closeRetained();
+      }
+    };
+  }
+
+  public static CameraSessionHolder get() {
+    if (instance == null) {
+      instance = new CameraSessionHolder();
+    }
+    return instance;
+  }
+
+  /**
+   * @param gracePeriodMs 暂停后保留相机的时间，0表示暂停时立刻释放
+   */
+  public void setGracePeriod(long gracePeriodMs) {
+    this.gracePeriodMs = gracePeriodMs;
+  }
+
+  /**
+   * 取回宽限期内保留的相机，没有的话创建一个新的{@link CameraManager}。
+   * 之后照常调用{@link CameraManager#openDriver}，保留的相机只会重新连接SurfaceHolder
+   */
+  public CameraManager acquire(Context context) {
+    CameraManager manager = retained;
+    if (manager != null) {
+      stopRetaining();
+      Log.i(TAG, "Reusing retained camera");
+      return manager;
+    }
+    return new CameraManager(context.getApplicationContext());
+  }
+
+  /**
+   * 代替{@link CameraManager#closeDriver()}，在onPause()中调用
+   *
+   * @param manager 当前的CameraManager，之后不要再使用它，直到再次{@link #acquire}
+   * @param retain 是否保留相机，Activity正在结束时应该传false
+   */
+  public void release(CameraManager manager, boolean retain) {
+    closeRetained();
+    if (!retain || gracePeriodMs <= 0L || !manager.isOpen()) {
+      manager.closeDriver();
+      return;
+    }
+    manager.park();
+    retained = manager;
+    handler.postDelayed(closeTask, gracePeriodMs);
+    prefs = PreferenceManager.getDefaultSharedPreferences(manager.getContext());
+    prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+  }
+
+  /**
+   * 立刻释放保留的相机
+   */
+  public void closeRetained() {
+    CameraManager manager = retained;
+    if (manager != null) {
+      stopRetaining();
+      manager.closeDriver();
+    }
+  }
+
+  private void stopRetaining() {
+    retained = null;
+    handler.removeCallbacks(closeTask);
+    if (prefs != null) {
+      prefs.unregisterOnSharedPreferenceChangeListener(prefsListener);
+      prefs = null;
+    }
+  }
+
+}
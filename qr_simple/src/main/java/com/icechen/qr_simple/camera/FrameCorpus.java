@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 供基准测试和回放使用的单文件帧语料库。
+ *
+ * 文件由三部分组成：固定长度的文件头、紧密排列的Y平面、以及最后的时间戳索引。
+ * 所有帧的尺寸相同，所以第i帧的位置可以直接算出来。读取时通过{@link FileChannel#map}映射整个文件，
+ * {@link #getFrame}返回的是映射内存的切片，不会拷贝也不会分配大数组，
+ * 配合{@link MappedLuminanceSource}可以让基准测试只测量解码器本身，而不是磁盘和GC。
+ *
+ * 录制时使用的是可以流式写入的{@link FrameRecording}，用{@link #fromRecording}把它转换成语料库。
+ */
+public final class FrameCorpus implements Closeable {
+
+  static final int MAGIC = 0x51525343; // "QRSC"
+  static final int VERSION = 1;
+  //magic、version、7个Header字段、帧数(int)和索引位置(long)
+  static final int HEADER_SIZE = 4 * 10 + 8;
+  //单个MappedByteBuffer最多2GB，按段映射，每段不超过这个大小
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+  private final FrameRecording.Header header;
+  private final int frameCount;
+  private final long[] timestamps;
+  private final int framesPerSegment;
+  private final MappedByteBuffer[] segments;
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+
+  public FrameCorpus(File corpusFile) throws IOException {
+    file = new RandomAccessFile(corpusFile, "r");
+    channel = file.getChannel();
+    try {
+      if (channel.size() < HEADER_SIZE) {
+        throw new IOException("Not a frame corpus: " + corpusFile);
+      }
+      ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if (head.getInt() != MAGIC) {
+        throw new IOException("Not a frame corpus: " + corpusFile);
+      }
+      int version = head.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported frame corpus version " + version);
+      }
+      header = new FrameRecording.Header(head.getInt(), head.getInt(), head.getInt(),
+                                         head.getInt(), head.getInt(), head.getInt(), head.getInt());
+      frameCount = head.getInt();
+      long indexOffset = head.getLong();
+      long frameSize = header.getFrameSize();
+      if (frameCount < 0 || frameSize <= 0 ||
+          indexOffset != HEADER_SIZE + frameCount * frameSize ||
+          channel.size() < indexOffset + 8L * frameCount) {
+        throw new IOException("Corrupt frame corpus: " + corpusFile);
+      }
+
+      timestamps = new long[frameCount];
+      channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, 8L * frameCount).asLongBuffer().get(timestamps);
+
+      framesPerSegment = (int) Math.max(1L, MAX_SEGMENT_SIZE / frameSize);
+      segments = new MappedByteBuffer[(frameCount + framesPerSegment - 1) / framesPerSegment];
+      for (int i = 0; i < segments.length; i++) {
+        int frames = Math.min(framesPerSegment, frameCount - i * framesPerSegment);
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                  HEADER_SIZE + (long) i * framesPerSegment * frameSize,
+                                  frames * frameSize);
+      }
+    } catch (IOException ioe) {
+      file.close();
+      throw ioe;
+    }
+  }
+
+  public FrameRecording.Header getHeader() {
+    return header;
+  }
+
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  public long getTimestampNanos(int index) {
+    return timestamps[index];
+  }
+
+  /**
+   * @return 第index帧的Y平面，是映射内存的只读切片，position为0，limit为一帧的大小
+   */
+  public ByteBuffer getFrame(int index) {
+    if (index < 0 || index >= frameCount) {
+      throw new IndexOutOfBoundsException("Frame " + index + " of " + frameCount);
+    }
+    int frameSize = header.getFrameSize();
+    ByteBuffer frame = segments[index / framesPerSegment].duplicate();
+    int offset = (index % framesPerSegment) * frameSize;
+    frame.position(offset);
+    frame.limit(offset + frameSize);
+    return frame.slice();
+  }
+
+  /**
+   * @return 第index帧中扫描框部分的亮度数据，不拷贝帧数据
+   */
+  public MappedLuminanceSource buildLuminanceSource(int index) {
+    return new MappedLuminanceSource(getFrame(index), header.width, header.height,
+                                     header.cropLeft, header.cropTop, header.cropWidth, header.cropHeight);
+  }
+
+  @Override
+  public void close() throws IOException {
+    //映射的内存在MappedByteBuffer被回收时才释放，这里只关闭文件
+    file.close();
+  }
+
+  /**
+   * 把一个{@link FrameRecording}录制文件转换成语料库
+   *
+   * @return 转换的帧数
+   */
+  public static int fromRecording(File recordingFile, File corpusFile) throws IOException {
+    FrameRecording.Reader reader = new FrameRecording.Reader(recordingFile);
+    try {
+      Writer writer = new Writer(corpusFile, reader.getHeader());
+      try {
+        FrameRecording.Frame frame;
+        while ((frame = reader.next()) != null) {
+          writer.write(frame.luminance, frame.timestampNanos);
+        }
+        return writer.frameCount;
+      } finally {
+        writer.close();
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * 顺序写入语料库，帧数和索引在{@link #close}时写入
+   */
+  public static final class Writer implements Closeable {
+
+    private final FrameRecording.Header header;
+    private final RandomAccessFile file;
+    private long[] timestamps = new long[64];
+    private int frameCount;
+
+    public Writer(File corpusFile, FrameRecording.Header header) throws IOException {
+      this.header = header;
+      file = new RandomAccessFile(corpusFile, "rw");
+      try {
+        file.setLength(0L);
+        writeHeader(0, 0L);
+      } catch (IOException ioe) {
+        file.close();
+        throw ioe;
+      }
+    }
+
+    /**
+     * 写入一帧，只保存data开头的Y平面
+     *
+     * @param data NV21格式的预览帧或者Y平面
+     * @param timestampNanos 这一帧的时间
+     */
+    public void write(byte[] data, long timestampNanos) throws IOException {
+      int frameSize = header.getFrameSize();
+      if (data.length < frameSize) {
+        throw new IllegalArgumentException("Frame is smaller than " + header.width + 'x' + header.height);
+      }
+      file.write(data, 0, frameSize);
+      if (frameCount == timestamps.length) {
+        long[] grown = new long[timestamps.length * 2];
+        System.arraycopy(timestamps, 0, grown, 0, frameCount);
+        timestamps = grown;
+      }
+      timestamps[frameCount++] = timestampNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        long indexOffset = HEADER_SIZE + (long) frameCount * header.getFrameSize();
+        ByteBuffer index = ByteBuffer.allocate(8 * frameCount);
+        index.asLongBuffer().put(timestamps, 0, frameCount);
+        FileChannel channel = file.getChannel();
+        channel.position(indexOffset);
+        while (index.hasRemaining()) {
+          channel.write(index);
+        }
+        file.seek(0L);
+        writeHeader(frameCount, indexOffset);
+      } finally {
+        file.close();
+      }
+    }
+
+    private void writeHeader(int frameCount, long indexOffset) throws IOException {
+      file.writeInt(MAGIC);
+      file.writeInt(VERSION);
+      file.writeInt(header.width);
+      file.writeInt(header.height);
+      file.writeInt(header.rotation);
+      file.writeInt(header.cropLeft);
+      file.writeInt(header.cropTop);
+      file.writeInt(header.cropWidth);
+      file.writeInt(header.cropHeight);
+      file.writeInt(frameCount);
+      file.writeLong(indexOffset);
+    }
+  }
+
+}
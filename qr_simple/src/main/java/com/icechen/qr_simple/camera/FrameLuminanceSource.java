@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+/**
+ * 可以跨帧复用的预览帧亮度数据，和{@link PlanarYUVLuminanceSource}一样从YUV数据中裁剪出扫描框。
+ *
+ * LuminanceSource的宽高创建后不能改变，所以只要扫描框的尺寸不变，
+ * 就用{@link #setFrame}把它原地指向新的一帧，{@link #getMatrix()}返回的数组也会被复用。
+ * 绑定在它上面的Binarizer需要同时重置，解码线程中由DecodeContext负责。
+ *
+ * 只在一个解码线程中使用，不需要同步。
+ */
+public final class FrameLuminanceSource extends LuminanceSource {
+
+  private byte[] yuvData;
+  private int dataWidth;
+  private int dataHeight;
+  private int left;
+  private int top;
+  private byte[] matrix;
+  private boolean matrixValid;
+
+  public FrameLuminanceSource(int width, int height) {
+    super(width, height);
+  }
+
+  /**
+   * 指向新的一帧
+   *
+   * @param yuvData 预览帧，Y平面在最前面
+   * @param dataWidth 预览帧的宽
+   * @param dataHeight 预览帧的高
+   * @param left 扫描框的左边
+   * @param top 扫描框的上边
+   */
+  public void setFrame(byte[] yuvData, int dataWidth, int dataHeight, int left, int top) {
+    if (left + getWidth() > dataWidth || top + getHeight() > dataHeight) {
+      throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+    }
+    this.yuvData = yuvData;
+    this.dataWidth = dataWidth;
+    this.dataHeight = dataHeight;
+    this.left = left;
+    this.top = top;
+    matrixValid = false;
+  }
+
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    int offset = (y + top) * dataWidth + left;
+    System.arraycopy(yuvData, offset, row, 0, width);
+    return row;
+  }
+
+  @Override
+  public byte[] getMatrix() {
+    int width = getWidth();
+    int height = getHeight();
+
+    // If the caller asks for the entire underlying image, save the copy and give them the
+    // original data. The docs specifically warn that result.length must be ignored.
+    if (width == dataWidth && height == dataHeight) {
+      return yuvData;
+    }
+    if (matrixValid) {
+      return matrix;
+    }
+
+    int area = width * height;
+    if (matrix == null) {
+      matrix = new byte[area];
+    }
+    int inputOffset = top * dataWidth + left;
+
+    // If the width matches the full width of the underlying data, perform a single copy.
+    if (width == dataWidth) {
+      System.arraycopy(yuvData, inputOffset, matrix, 0, area);
+    } else {
+      // Otherwise copy one cropped row at a time.
+      byte[] yuv = yuvData;
+      for (int y = 0; y < height; y++) {
+        int outputOffset = y * width;
+        System.arraycopy(yuv, inputOffset, matrix, outputOffset, width);
+        inputOffset += dataWidth;
+      }
+    }
+    matrixValid = true;
+    return matrix;
+  }
+
+  @Override
+  public boolean isCropSupported() {
+    return true;
+  }
+
+  @Override
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    return new PlanarYUVLuminanceSource(yuvData,
+                                        dataWidth,
+                                        dataHeight,
+                                        this.left + left,
+                                        this.top + top,
+                                        width,
+                                        height,
+                                        false);
+  }
+
+}
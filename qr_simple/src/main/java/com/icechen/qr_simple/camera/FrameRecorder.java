@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把相机产生的预览帧录制到文件中，格式见{@link FrameRecording}。
+ *
+ * 写文件在单独的线程中进行，不会阻塞相机回调；写不过来时直接丢帧，并记录丢了多少。
+ */
+final class FrameRecorder {
+
+  private static final String TAG = FrameRecorder.class.getSimpleName();
+
+  private static final int MAX_PENDING_FRAMES = 4;
+
+  private final FrameRecording.Writer writer;
+  //只录制Y平面
+  private final int frameSize;
+  private final HandlerThread thread;
+  private final Handler handler;
+  private final AtomicInteger pendingFrames;
+  private int recordedFrames;
+  private int droppedFrames;
+
+  FrameRecorder(File file, FrameRecording.Header header) throws IOException {
+    writer = new FrameRecording.Writer(file, header);
+    frameSize = header.getFrameSize();
+    pendingFrames = new AtomicInteger();
+    thread = new HandlerThread(TAG);
+    thread.start();
+    handler = new Handler(thread.getLooper());
+    Log.i(TAG, "Recording frames to " + file);
+  }
+
+  /**
+   * 录制一帧，在相机回调中调用
+   *
+   * @param data NV21格式的预览帧，会先拷贝其中的Y平面，调用以后缓冲区可以还给相机
+   * @param timestampNanos 收到这一帧的时间
+   */
+  void record(byte[] data, final long timestampNanos) {
+    if (pendingFrames.get() >= MAX_PENDING_FRAMES) {
+      droppedFrames++;
+      return;
+    }
+    final byte[] copy = Arrays.copyOf(data, frameSize);
+    pendingFrames.incrementAndGet();
+    recordedFrames++;
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          writer.write(copy, timestampNanos);
+        } catch (IOException ioe) {
+          Log.w(TAG, "Couldn't record frame", ioe);
+        } finally {
+          pendingFrames.decrementAndGet();
+        }
+      }
+    });
+  }
+
+  /**
+   * 写完已经排队的帧以后关闭文件，并结束写文件的线程
+   */
+  void close() {
+    Log.i(TAG, "Recorded " + recordedFrames + " frames, dropped " + droppedFrames);
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          writer.close();
+        } catch (IOException ioe) {
+          Log.w(TAG, "Couldn't close recording", ioe);
+        }
+        Looper.myLooper().quit();
+      }
+    });
+  }
+
+}
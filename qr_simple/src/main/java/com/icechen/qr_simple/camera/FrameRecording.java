@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * 预览帧录制文件的格式。
+ *
+ * 文件头记录了相机的配置：预览尺寸、旋转角度和扫描框在预览画面中的位置；
+ * 之后是一帧一帧的记录：时间戳（纳秒）、长度和Y平面数据。解码只用到Y平面，所以UV平面不会被保存。
+ *
+ * 这个类只依赖于java.io，可以在JVM单元测试中直接读取现场录下来的文件。
+ */
+public final class FrameRecording {
+
+  static final int MAGIC = 0x51525346; // "QRSF"
+  static final int VERSION = 1;
+
+  private FrameRecording() {
+  }
+
+  /**
+   * 录制时的相机配置
+   */
+  public static final class Header {
+
+    public final int width;
+    public final int height;
+    public final int rotation;
+    public final int cropLeft;
+    public final int cropTop;
+    public final int cropWidth;
+    public final int cropHeight;
+
+    public Header(int width, int height, int rotation,
+                  int cropLeft, int cropTop, int cropWidth, int cropHeight) {
+      this.width = width;
+      this.height = height;
+      this.rotation = rotation;
+      this.cropLeft = cropLeft;
+      this.cropTop = cropTop;
+      this.cropWidth = cropWidth;
+      this.cropHeight = cropHeight;
+    }
+
+    /**
+     * @return 一帧Y平面的字节数
+     */
+    public int getFrameSize() {
+      return width * height;
+    }
+  }
+
+  /**
+   * 录下来的一帧
+   */
+  public static final class Frame {
+
+    public final long timestampNanos;
+    public final byte[] luminance;
+
+    Frame(long timestampNanos, byte[] luminance) {
+      this.timestampNanos = timestampNanos;
+      this.luminance = luminance;
+    }
+  }
+
+  public static final class Writer implements Closeable {
+
+    private final Header header;
+    private final DataOutputStream out;
+
+    public Writer(File file, Header header) throws IOException {
+      this.header = header;
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(header.width);
+      out.writeInt(header.height);
+      out.writeInt(header.rotation);
+      out.writeInt(header.cropLeft);
+      out.writeInt(header.cropTop);
+      out.writeInt(header.cropWidth);
+      out.writeInt(header.cropHeight);
+    }
+
+    /**
+     * 写入一帧，只保存data开头的Y平面
+     *
+     * @param data NV21格式的预览帧
+     * @param timestampNanos 收到这一帧的时间
+     */
+    public void write(byte[] data, long timestampNanos) throws IOException {
+      int frameSize = header.getFrameSize();
+      if (data.length < frameSize) {
+        throw new IllegalArgumentException("Frame is smaller than " + header.width + 'x' + header.height);
+      }
+      out.writeLong(timestampNanos);
+      out.writeInt(frameSize);
+      out.write(data, 0, frameSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  public static final class Reader implements Closeable {
+
+    private final Header header;
+    private final DataInputStream in;
+
+    public Reader(File file) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (in.readInt() != MAGIC) {
+          throw new IOException("Not a frame recording: " + file);
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+          throw new IOException("Unsupported frame recording version " + version);
+        }
+        header = new Header(in.readInt(), in.readInt(), in.readInt(),
+                            in.readInt(), in.readInt(), in.readInt(), in.readInt());
+      } catch (IOException ioe) {
+        in.close();
+        throw ioe;
+      }
+    }
+
+    public Header getHeader() {
+      return header;
+    }
+
+    /**
+     * @return 下一帧，已经读完时返回null
+     */
+    public Frame next() throws IOException {
+      long timestampNanos;
+      try {
+        timestampNanos = in.readLong();
+      } catch (EOFException eofe) {
+        return null;
+      }
+      int length = in.readInt();
+      if (length != header.getFrameSize()) {
+        throw new IOException("Bad frame length " + length);
+      }
+      byte[] luminance = new byte[length];
+      in.readFully(luminance);
+      return new Frame(timestampNanos, luminance);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+}
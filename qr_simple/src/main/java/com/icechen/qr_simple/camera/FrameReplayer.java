@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import android.os.Handler;
+import android.os.Message;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用录制好的帧代替相机，把它们送进{@link com.icechen.qr_simple.CaptureActivityHandler}到
+ * {@link com.icechen.qr_simple.DecodeHandler}的解码流程中。
+ *
+ * 按真实速度回放时，解码期间“相机”产生的帧会被跳过，和真实相机的行为一致；
+ * 按最快速度回放时，每一帧都会被送去解码，可以用来比较吞吐量和识别率。
+ * 选帧和计时都在{@link ReplayLoop}中，这里只负责通过Handler发送。
+ */
+final class FrameReplayer {
+
+  private static final String TAG = FrameReplayer.class.getSimpleName();
+
+  private final ReplayLoop loop;
+
+  FrameReplayer(File file, boolean realTime) throws IOException {
+    loop = new ReplayLoop(file, realTime);
+    Log.i(TAG, "Replaying frames from " + file + (realTime ? " in real time" : " at full speed"));
+  }
+
+  FrameRecording.Header getHeader() {
+    return loop.getHeader();
+  }
+
+  /**
+   * 和{@link android.hardware.Camera#setOneShotPreviewCallback}一样，把下一帧发送给handler一次
+   */
+  void requestFrame(final Handler handler, final int message) {
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        deliverNextFrame(handler, message);
+      }
+    });
+  }
+
+  /**
+   * 在解码线程中读取下一帧并发送
+   */
+  private synchronized void deliverNextFrame(Handler handler, int message) {
+    if (loop.isFinished()) {
+      return;
+    }
+    FrameRecording.Frame frame;
+    try {
+      frame = loop.next(System.nanoTime());
+    } catch (IOException ioe) {
+      Log.w(TAG, "Couldn't read recorded frame", ioe);
+      frame = null;
+    }
+    if (frame == null) {
+      Log.i(TAG, "Replay finished: delivered " + loop.getDeliveredFrames() + " frames, skipped " +
+          loop.getSkippedFrames());
+      return;
+    }
+    FrameRecording.Header header = loop.getHeader();
+    Message frameMessage = handler.obtainMessage(message, header.width, header.height, frame.luminance);
+    handler.sendMessageDelayed(frameMessage, TimeUnit.NANOSECONDS.toMillis(loop.getDelayNanos()));
+  }
+
+  synchronized void close() {
+    try {
+      loop.close();
+    } catch (IOException ioe) {
+      Log.w(TAG, "Couldn't close recording", ioe);
+    }
+  }
+
+}
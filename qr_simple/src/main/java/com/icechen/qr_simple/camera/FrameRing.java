@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 相机回调和解码线程之间的单生产者、单消费者环形队列，传递的是预览帧的描述（缓冲区、尺寸、时间戳、序号）。
+ *
+ * 缓冲区是预先分配好的，通过{@link android.hardware.Camera#addCallbackBuffer}交给相机填充。
+ * 相机回调用{@link #publish}放入一帧，队列满时覆盖最旧的那一帧，被覆盖的缓冲区直接还给相机；
+ * 解码线程用{@link #take()}取走最新的一帧，用完以后{@link #release}还给相机。
+ * 每一帧在任何时刻只属于相机、队列中的某个槽或者解码线程其中之一，槽的交接用原子交换完成，不需要加锁。
+ */
+public final class FrameRing {
+
+  /**
+   * 缓冲区用完以后怎么还给相机
+   */
+  interface Recycler {
+    void recycle(FrameRing ring, byte[] buffer);
+  }
+
+  /**
+   * 一帧的描述，缓冲区固定，其余字段每次放入队列时由相机回调更新
+   */
+  public static final class Frame {
+
+    private final byte[] data;
+    private final int width;
+    private final int height;
+    private long timestampNanos;
+    private long sequence;
+
+    private Frame(byte[] data, int width, int height) {
+      this.data = data;
+      this.width = width;
+      this.height = height;
+    }
+
+    public byte[] getData() {
+      return data;
+    }
+
+    public int getWidth() {
+      return width;
+    }
+
+    public int getHeight() {
+      return height;
+    }
+
+    /**
+     * @return 收到这一帧的时间，{@link System#nanoTime()}
+     */
+    public long getTimestampNanos() {
+      return timestampNanos;
+    }
+
+    /**
+     * @return 这一帧在队列中的序号，从0开始连续递增，序号不连续说明中间的帧被覆盖了
+     */
+    public long getSequence() {
+      return sequence;
+    }
+  }
+
+  private final AtomicReferenceArray<Frame> slots;
+  private final int mask;
+  //每个缓冲区对应一个描述，相机回调按缓冲区找到它
+  private final Frame[] frames;
+  private final Recycler recycler;
+  //已经放入的帧数，也就是下一帧的序号，只由相机回调写入
+  private final AtomicLong published;
+  //解码线程取走的最新一帧的序号加一，只由解码线程写入
+  private volatile long taken;
+  private volatile long overwrittenFrames;
+
+  /**
+   * @param capacity 队列的槽数，必须是2的幂；缓冲区比它多两个，一个在解码，至少一个在相机手里
+   * @param bufferSize 每个缓冲区的字节数
+   * @param width 预览帧的宽
+   * @param height 预览帧的高
+   * @param recycler 把缓冲区还给相机
+   */
+  FrameRing(int capacity, int bufferSize, int width, int height, Recycler recycler) {
+    if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    slots = new AtomicReferenceArray<>(capacity);
+    mask = capacity - 1;
+    frames = new Frame[capacity + 2];
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = new Frame(new byte[bufferSize], width, height);
+    }
+    this.recycler = recycler;
+    published = new AtomicLong();
+  }
+
+  /**
+   * 把所有缓冲区交给相机，开始预览时调用一次
+   */
+  void recycleAll() {
+    for (Frame frame : frames) {
+      recycler.recycle(this, frame.data);
+    }
+  }
+
+  /**
+   * 放入相机刚填充好的一帧，只能在相机回调中调用
+   *
+   * @param data 相机回调收到的缓冲区
+   * @param timestampNanos 收到这一帧的时间
+   * @return data不是这个队列的缓冲区时返回false
+   */
+  boolean publish(byte[] data, long timestampNanos) {
+    Frame frame = find(data);
+    if (frame == null) {
+      return false;
+    }
+    long sequence = published.get();
+    frame.sequence = sequence;
+    frame.timestampNanos = timestampNanos;
+    //这个槽里如果还有帧，就是队列中最旧的一帧
+    Frame oldest = slots.getAndSet((int) sequence & mask, frame);
+    published.lazySet(sequence + 1);
+    if (oldest != null) {
+      overwrittenFrames++;
+      recycler.recycle(this, oldest.data);
+    }
+    return true;
+  }
+
+  /**
+   * @return 是否有解码线程还没有取走的新帧
+   */
+  boolean hasFrame() {
+    return published.get() != taken;
+  }
+
+  /**
+   * 取走最新的一帧，比它旧的帧留在队列中，之后会被覆盖。只能在解码线程中调用
+   *
+   * @return 没有新帧时返回null
+   */
+  public Frame take() {
+    long end = published.get();
+    if (end == taken) {
+      return null;
+    }
+    //相机回调可能已经又放入了几帧，这时取到的是更新的一帧
+    Frame frame = slots.getAndSet((int) (end - 1) & mask, null);
+    if (frame == null) {
+      return null;
+    }
+    taken = frame.sequence + 1;
+    return frame;
+  }
+
+  /**
+   * 解码完以后把缓冲区还给相机
+   */
+  public void release(Frame frame) {
+    recycler.recycle(this, frame.data);
+  }
+
+  long getPublishedFrames() {
+    return published.get();
+  }
+
+  /**
+   * @return 解码线程来不及取走、被新帧覆盖的帧数
+   */
+  long getOverwrittenFrames() {
+    return overwrittenFrames;
+  }
+
+  private Frame find(byte[] data) {
+    for (Frame frame : frames) {
+      if (frame.data == data) {
+        return frame;
+      }
+    }
+    return null;
+  }
+
+}
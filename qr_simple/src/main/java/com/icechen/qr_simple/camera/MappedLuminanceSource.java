@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 直接从{@link ByteBuffer}（通常是{@link FrameCorpus}映射的内存）读取Y平面的亮度数据，
+ * 和{@link com.google.zxing.PlanarYUVLuminanceSource}一样支持裁剪，但不需要先把整帧拷贝到byte[]。
+ *
+ * 基准测试中可以用{@link #setFrame}把同一个对象指向下一帧，{@link #getMatrix()}返回的数组也会被复用，
+ * 这样绑定在它上面的Binarizer可以跨帧复用。
+ *
+ * 同一个对象不能在多个线程中同时使用。
+ */
+public final class MappedLuminanceSource extends LuminanceSource {
+
+  private ByteBuffer yPlane;
+  private final int dataWidth;
+  private final int dataHeight;
+  private final int left;
+  private final int top;
+  private byte[] matrix;
+  private boolean matrixValid;
+
+  public MappedLuminanceSource(ByteBuffer yPlane,
+                               int dataWidth,
+                               int dataHeight,
+                               int left,
+                               int top,
+                               int width,
+                               int height) {
+    super(width, height);
+    if (left + width > dataWidth || top + height > dataHeight) {
+      throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+    }
+    this.dataWidth = dataWidth;
+    this.dataHeight = dataHeight;
+    this.left = left;
+    this.top = top;
+    setFrame(yPlane);
+  }
+
+  /**
+   * 指向尺寸相同的另一帧
+   *
+   * @param yPlane 从position开始的Y平面
+   */
+  public void setFrame(ByteBuffer yPlane) {
+    if (yPlane.remaining() < dataWidth * dataHeight) {
+      throw new IllegalArgumentException("Buffer is smaller than " + dataWidth + 'x' + dataHeight);
+    }
+    //从调用者的position开始切片，之后用自己的position读取，不影响调用者
+    this.yPlane = yPlane.slice();
+    matrixValid = false;
+  }
+
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    yPlane.position((y + top) * dataWidth + left);
+    yPlane.get(row, 0, width);
+    return row;
+  }
+
+  @Override
+  public byte[] getMatrix() {
+    if (matrixValid) {
+      return matrix;
+    }
+    int width = getWidth();
+    int height = getHeight();
+    if (matrix == null) {
+      matrix = new byte[width * height];
+    }
+    if (width == dataWidth && height == dataHeight) {
+      yPlane.position(0);
+      yPlane.get(matrix, 0, matrix.length);
+    } else {
+      int inputOffset = top * dataWidth + left;
+      for (int y = 0; y < height; y++) {
+        yPlane.position(inputOffset);
+        yPlane.get(matrix, y * width, width);
+        inputOffset += dataWidth;
+      }
+    }
+    matrixValid = true;
+    return matrix;
+  }
+
+  @Override
+  public boolean isCropSupported() {
+    return true;
+  }
+
+  @Override
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    ByteBuffer plane = yPlane.duplicate();
+    plane.position(0);
+    return new MappedLuminanceSource(plane, dataWidth, dataHeight,
+                                     this.left + left, this.top + top, width, height);
+  }
+
+}
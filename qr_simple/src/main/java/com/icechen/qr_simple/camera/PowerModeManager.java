@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import android.content.Context;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.icechen.qr_simple.PreferencesActivity;
+
+/**
+ * 省电模式。使用电池时，如果画面一段时间没有变化、也没有找到可能的结果点，就降低预览帧率，
+ * 并限制送去解码的帧数；画面一变化或者出现结果点就立刻恢复。
+ *
+ * 预览停止时会在日志里输出这次扫描的统计：请求的帧数、被推迟的帧数、空闲时长和帧率切换次数。
+ */
+final class PowerModeManager {
+
+  private static final String TAG = PowerModeManager.class.getSimpleName();
+
+  //多久没有动静就进入空闲
+  private static final long IDLE_DELAY_MS = 5000L;
+  //空闲时两次解码请求的最小间隔，即每秒最多解码4帧
+  private static final long IDLE_FRAME_INTERVAL_MS = 250L;
+
+  private final Context context;
+  private final CameraConfigurationManager configManager;
+  private final Handler handler;
+  private final Runnable rampUpTask;
+  private Camera camera;
+  private boolean enabled;
+  private volatile boolean onBattery;
+  private volatile boolean idle;
+  private volatile long lastActivityMillis;
+  private long nextFrameMillis;
+  private PendingRequest pendingRequest;
+
+  private long startMillis;
+  private long modeSinceMillis;
+  private long idleMillis;
+  private int framesRequested;
+  private int framesDelayed;
+  private int frameRateSwitches;
+
+  PowerModeManager(Context context, CameraConfigurationManager configManager) {
+    this.context = context;
+    this.configManager = configManager;
+    handler = new Handler(Looper.getMainLooper());
+    rampUpTask = new Runnable() {
+      @Override
+      public void run() {
+        rampUp();
+      }
+    };
+  }
+
+  /**
+   * 预览开始时调用
+   */
+  synchronized void start(Camera camera) {
+    this.camera = camera;
+    enabled = PreferenceManager.getDefaultSharedPreferences(context)
+        .getBoolean(PreferencesActivity.KEY_POWER_SAVING, true);
+    idle = false;
+    long now = SystemClock.uptimeMillis();
+    lastActivityMillis = now;
+    nextFrameMillis = now;
+    startMillis = now;
+    modeSinceMillis = now;
+    idleMillis = 0L;
+    framesRequested = 0;
+    framesDelayed = 0;
+    frameRateSwitches = 0;
+  }
+
+  /**
+   * 预览停止前调用，取消推迟的请求，恢复帧率并输出统计
+   */
+  synchronized void stop() {
+    if (camera == null) {
+      return;
+    }
+    handler.removeCallbacks(rampUpTask);
+    if (pendingRequest != null) {
+      handler.removeCallbacks(pendingRequest);
+      pendingRequest = null;
+    }
+    long now = SystemClock.uptimeMillis();
+    if (idle) {
+      idleMillis += now - modeSinceMillis;
+      setIdleFrameRate(false);
+      idle = false;
+    }
+    Log.i(TAG, "Scanned " + (now - startMillis) + " ms, idle " + idleMillis + " ms; " +
+        framesRequested + " frames requested, " + framesDelayed + " delayed; " +
+        frameRateSwitches + " frame rate switches");
+    camera = null;
+  }
+
+  /**
+   * 画面变化或者找到了可能的结果点，可以在任何线程调用
+   */
+  void onActivity() {
+    lastActivityMillis = SystemClock.uptimeMillis();
+    if (idle) {
+      handler.post(rampUpTask);
+    }
+  }
+
+  /**
+   * 电源状态变化，来自{@link com.icechen.qr_simple.InactivityTimer}
+   *
+   * @param onBattery 是否在使用电池
+   */
+  void setOnBattery(boolean onBattery) {
+    this.onBattery = onBattery;
+    if (!onBattery && idle) {
+      handler.post(rampUpTask);
+    }
+  }
+
+  /**
+   * 请求预览帧之前调用，必要时在这里进入空闲
+   *
+   * @return 这次请求需要推迟多少毫秒，0表示立刻请求
+   */
+  synchronized long onFrameRequested() {
+    framesRequested++;
+    long now = SystemClock.uptimeMillis();
+    if (!idle && enabled && onBattery && camera != null &&
+        now - lastActivityMillis >= IDLE_DELAY_MS) {
+      enterIdle(now);
+    }
+    if (!idle || nextFrameMillis <= now) {
+      nextFrameMillis = now + IDLE_FRAME_INTERVAL_MS;
+      return 0L;
+    }
+    framesDelayed++;
+    long delay = nextFrameMillis - now;
+    nextFrameMillis += IDLE_FRAME_INTERVAL_MS;
+    return delay;
+  }
+
+  /**
+   * 推迟一次预览帧请求，恢复正常模式时会立刻执行
+   */
+  synchronized void postDelayed(Runnable request, long delayMillis) {
+    if (pendingRequest != null) {
+      handler.removeCallbacks(pendingRequest);
+    }
+    pendingRequest = new PendingRequest(request);
+    handler.postDelayed(pendingRequest, delayMillis);
+  }
+
+  private void enterIdle(long now) {
+    Log.d(TAG, "Scene idle, lowering frame rate");
+    idle = true;
+    modeSinceMillis = now;
+    setIdleFrameRate(true);
+  }
+
+  private synchronized void rampUp() {
+    if (!idle || camera == null) {
+      return;
+    }
+    Log.d(TAG, "Activity, restoring frame rate");
+    long now = SystemClock.uptimeMillis();
+    idle = false;
+    idleMillis += now - modeSinceMillis;
+    modeSinceMillis = now;
+    lastActivityMillis = now;
+    setIdleFrameRate(false);
+    if (pendingRequest != null) {
+      handler.removeCallbacks(pendingRequest);
+      handler.post(pendingRequest);
+    }
+  }
+
+  private void setIdleFrameRate(boolean newIdle) {
+    frameRateSwitches++;
+    try {
+      configManager.setIdleFrameRate(camera, newIdle);
+    } catch (RuntimeException re) {
+      // 有些驱动拒绝运行中修改帧率，只靠限制解码次数省电
+      Log.w(TAG, "Could not change preview frame rate", re);
+    }
+  }
+
+  /**
+   * 被推迟的请求，执行前确认它没有被取消或替换
+   */
+  private final class PendingRequest implements Runnable {
+
+    private final Runnable request;
+
+    PendingRequest(Runnable request) {
+      this.request = request;
+    }
+
+    @Override
+    public void run() {
+      synchronized (PowerModeManager.this) {
+        if (pendingRequest != this) {
+          return;
+        }
+        pendingRequest = null;
+      }
+      request.run();
+    }
+  }
+
+}
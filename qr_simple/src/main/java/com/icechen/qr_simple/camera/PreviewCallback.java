@@ -16,7 +16,6 @@
 
 package com.icechen.qr_simple.camera;
 
-import android.graphics.Point;
 import android.hardware.Camera;
 import android.os.Handler;
 import android.os.Message;
@@ -24,53 +23,92 @@ import android.util.Log;
 
 import com.icechen.qr_simple.DecodeHandler;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 
 /**
- * 预览回调函数
+ * 预览回调函数。
+ *
+ * 相机用{@link Camera#setPreviewCallbackWithBuffer}不停地产生预览帧，这里只把它放进{@link FrameRing}；
+ * 解码线程请求下一帧时如果队列里已经有新帧就立刻唤醒它，否则登记为等待，收到下一帧时再唤醒。
+ * 解码线程忙的时候相机回调不发任何消息，只是覆盖队列中最旧的帧。
  */
 final class PreviewCallback implements Camera.PreviewCallback {
 
   private static final String TAG = PreviewCallback.class.getSimpleName();
 
-  private final CameraConfigurationManager configManager;
-  private Handler previewHandler;
-  private int previewMessage;
+  private volatile FrameRing frameRing;
+  //等待下一帧的解码Handler，唤醒一次以后清空，请求和相机回调可能同时发生，用原子交换保证只唤醒一次
+  private final AtomicReference<Handler> waitingHandler;
+  private volatile int waitingMessage;
+  private volatile FrameRecorder frameRecorder;
 
-  PreviewCallback(CameraConfigurationManager configManager) {
-    this.configManager = configManager;
+  PreviewCallback() {
+    waitingHandler = new AtomicReference<>();
   }
 
+  /**
+   * 设置这次预览使用的队列，null表示停止预览，同时清除等待中的请求
+   */
+  void setFrameRing(FrameRing frameRing) {
+    this.frameRing = frameRing;
+    waitingHandler.set(null);
+  }
 
   /**
-   * 这里的Handler类型为{@link DecodeHandler}对象
+   * 请求一帧。这里的Handler类型为{@link DecodeHandler}对象，收到的消息中obj是{@link FrameRing}，
+   * 用{@link FrameRing#take()}取出最新的一帧
    * @param previewHandler
    * @param previewMessage
    */
   void setHandler(Handler previewHandler, int previewMessage) {
-    this.previewHandler = previewHandler;
-    this.previewMessage = previewMessage;
+    waitingMessage = previewMessage;
+    waitingHandler.set(previewHandler);
+    FrameRing ring = frameRing;
+    if (previewHandler != null && ring != null && ring.hasFrame() &&
+        waitingHandler.compareAndSet(previewHandler, null)) {
+      //已经有解码线程还没看过的帧，不用等下一帧
+      wake(previewHandler, previewMessage, ring);
+    }
   }
 
   /**
-   * 向{@link DecodeHandler}中发送byte[]
+   * 设置录制相机产生的帧的{@link FrameRecorder}，null表示不录制
+   */
+  void setFrameRecorder(FrameRecorder frameRecorder) {
+    this.frameRecorder = frameRecorder;
+  }
+
+  /**
+   * 把这一帧放进队列，有等待的解码线程时唤醒它
    * @param data
    * @param camera
    */
   @Override
   public void onPreviewFrame(byte[] data, Camera camera) {
-    Point cameraResolution = configManager.getCameraResolution();
-    Handler thePreviewHandler = previewHandler;
-    if (cameraResolution != null && thePreviewHandler != null) {
-      /**
-       * 向{@link DecodeHandler}中发送byte[]
-       */
-      Message message = thePreviewHandler.obtainMessage(previewMessage, cameraResolution.x,
-          cameraResolution.y, data);
-      message.sendToTarget();
-      previewHandler = null;
-    } else {
-      Log.d(TAG, "Got preview callback, but no handler or resolution available");
+    FrameRing ring = frameRing;
+    if (ring == null || data == null) {
+      Log.d(TAG, "Got preview callback, but no frame ring available");
+      return;
+    }
+    long now = System.nanoTime();
+    FrameRecorder recorder = frameRecorder;
+    if (recorder != null) {
+      //放进队列以后缓冲区随时可能被解码线程还给相机，要在这之前录制
+      recorder.record(data, now);
+    }
+    if (!ring.publish(data, now)) {
+      Log.d(TAG, "Got preview callback with a buffer that is not in the frame ring");
+      return;
     }
+    Handler handler = waitingHandler.getAndSet(null);
+    if (handler != null) {
+      wake(handler, waitingMessage, ring);
+    }
+  }
+
+  private static void wake(Handler handler, int message, FrameRing ring) {
+    Message.obtain(handler, message, ring).sendToTarget();
   }
 
 }
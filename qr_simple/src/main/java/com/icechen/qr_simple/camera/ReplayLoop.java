@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回放录制文件的循环，决定下一帧是哪一帧、什么时候送出，不依赖Handler。
+ *
+ * 按真实速度回放时，上一帧处理期间“相机”已经拍过去的帧会被跳过，和真实相机的行为一致；
+ * 按最快速度回放时，每一帧都会被送出。{@link FrameReplayer}用它把帧送进解码线程，
+ * 单元测试可以用{@link #run}把帧直接送进解码流程，在JVM中比较吞吐量和识别率。
+ *
+ * 同一时刻只能在一个线程中使用。
+ */
+public final class ReplayLoop {
+
+  /**
+   * 接收回放的帧，和解码线程处理一帧一样，返回以后才会送下一帧
+   */
+  public interface Sink {
+    /**
+     * @param luminance 整帧的Y平面
+     * @param width 画面的宽
+     * @param height 画面的高
+     * @param timestampNanos 录制时的时间戳
+     */
+    void onFrame(byte[] luminance, int width, int height, long timestampNanos);
+  }
+
+  private final FrameRecording.Reader reader;
+  private final boolean realTime;
+  private long firstTimestampNanos;
+  private long startNanos;
+  private boolean started;
+  private boolean finished;
+  private long delayNanos;
+  private int deliveredFrames;
+  private int skippedFrames;
+
+  /**
+   * @param file 录制文件，见{@link FrameRecording}
+   * @param realTime true表示按录制时的速度回放，false表示处理完一帧马上送下一帧
+   * @throws IOException 无法读取录制文件
+   */
+  public ReplayLoop(File file, boolean realTime) throws IOException {
+    reader = new FrameRecording.Reader(file);
+    this.realTime = realTime;
+  }
+
+  public FrameRecording.Header getHeader() {
+    return reader.getHeader();
+  }
+
+  /**
+   * 选出下一帧，要等待的时间用{@link #getDelayNanos()}读取
+   *
+   * @param nowNanos 当前的{@link System#nanoTime()}
+   * @return 下一帧，回放完时返回null
+   * @throws IOException 无法读取录制文件
+   */
+  public FrameRecording.Frame next(long nowNanos) throws IOException {
+    delayNanos = 0L;
+    if (finished) {
+      return null;
+    }
+    FrameRecording.Frame frame;
+    try {
+      frame = reader.next();
+      if (frame != null && !started) {
+        started = true;
+        firstTimestampNanos = frame.timestampNanos;
+        startNanos = nowNanos;
+      }
+      if (realTime) {
+        //跳过处理上一帧期间已经“拍”过去的帧，等待下一帧的时间到达
+        long elapsedNanos = nowNanos - startNanos;
+        while (frame != null && frame.timestampNanos - firstTimestampNanos < elapsedNanos) {
+          FrameRecording.Frame next = reader.next();
+          if (next == null) {
+            break;
+          }
+          skippedFrames++;
+          frame = next;
+        }
+        if (frame != null) {
+          delayNanos = Math.max(0L, frame.timestampNanos - firstTimestampNanos - elapsedNanos);
+        }
+      }
+    } catch (IOException ioe) {
+      finished = true;
+      throw ioe;
+    }
+    if (frame == null) {
+      finished = true;
+      return null;
+    }
+    deliveredFrames++;
+    return frame;
+  }
+
+  /**
+   * @return 上一次{@link #next}选出的帧要等多久才能送出
+   */
+  public long getDelayNanos() {
+    return delayNanos;
+  }
+
+  /**
+   * 在当前线程中回放剩下的所有帧，每一帧都等sink处理完才送下一帧
+   *
+   * @param sink 接收帧的一方
+   * @throws IOException 无法读取录制文件
+   * @throws InterruptedException 等待下一帧时被中断
+   */
+  public void run(Sink sink) throws IOException, InterruptedException {
+    FrameRecording.Header header = reader.getHeader();
+    FrameRecording.Frame frame;
+    while ((frame = next(System.nanoTime())) != null) {
+      if (delayNanos > 0L) {
+        TimeUnit.NANOSECONDS.sleep(delayNanos);
+      }
+      sink.onFrame(frame.luminance, header.width, header.height, frame.timestampNanos);
+    }
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public int getDeliveredFrames() {
+    return deliveredFrames;
+  }
+
+  public int getSkippedFrames() {
+    return skippedFrames;
+  }
+
+  public void close() throws IOException {
+    finished = true;
+    reader.close();
+  }
+
+}
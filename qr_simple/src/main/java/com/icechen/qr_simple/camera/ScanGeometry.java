@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.icechen.qr_simple.camera;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+
+/**
+ * 扫描相关尺寸的不可变快照：屏幕上的扫描框、预览帧中对应的区域、画面旋转角度和两者之间的缩放比例。
+ *
+ * 相机配置或扫描框变化时{@link CameraManager}生成新的快照，通过volatile字段发布，
+ * 解码线程和界面绘制直接读取，不需要获取CameraManager的锁。返回的Rect和Point不要修改。
+ */
+public final class ScanGeometry {
+
+  private final Rect framingRect;
+  private final Rect framingRectInPreview;
+  private final Point cameraResolution;
+  private final Point screenResolution;
+  private final int cwNeededRotation;
+  private final float scaleX;
+  private final float scaleY;
+
+  ScanGeometry(Rect framingRect,
+               Rect framingRectInPreview,
+               Point cameraResolution,
+               Point screenResolution,
+               int cwNeededRotation) {
+    this.framingRect = new Rect(framingRect);
+    this.framingRectInPreview = new Rect(framingRectInPreview);
+    this.cameraResolution = new Point(cameraResolution);
+    this.screenResolution = new Point(screenResolution);
+    this.cwNeededRotation = cwNeededRotation;
+    scaleX = framingRect.width() / (float) framingRectInPreview.width();
+    scaleY = framingRect.height() / (float) framingRectInPreview.height();
+  }
+
+  /**
+   * @return 屏幕上的扫描框，窗口坐标
+   */
+  public Rect getFramingRect() {
+    return framingRect;
+  }
+
+  /**
+   * @return 扫描框在预览帧中对应的区域
+   */
+  public Rect getFramingRectInPreview() {
+    return framingRectInPreview;
+  }
+
+  public Point getCameraResolution() {
+    return cameraResolution;
+  }
+
+  public Point getScreenResolution() {
+    return screenResolution;
+  }
+
+  /**
+   * @return 相机画面需要顺时针旋转多少度才和屏幕方向一致，0, 90, 180 或 270
+   */
+  public int getCWNeededRotation() {
+    return cwNeededRotation;
+  }
+
+  /**
+   * @return 预览帧中的横向距离乘以它得到屏幕上的距离
+   */
+  public float getScaleX() {
+    return scaleX;
+  }
+
+  /**
+   * @return 预览帧中的纵向距离乘以它得到屏幕上的距离
+   */
+  public float getScaleY() {
+    return scaleY;
+  }
+
+  @Override
+  public String toString() {
+    return "framing " + framingRect + ", in preview " + framingRectInPreview + ", rotation " + cwNeededRotation;
+  }
+
+}
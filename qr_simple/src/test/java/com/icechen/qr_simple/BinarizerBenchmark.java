@@ -0,0 +1,189 @@
+package com.icechen.qr_simple;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.icechen.qr_simple.camera.FrameCorpus;
+import com.icechen.qr_simple.camera.FrameRecording;
+import com.icechen.qr_simple.camera.MappedLuminanceSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在帧语料库上比较各种Binarizer的耗时和识别率。
+ *
+ * 运行main方法，参数是{@link FrameCorpus}文件的路径（可以用{@link FrameCorpus#fromRecording}从现场录制的文件转换）；
+ * 不指定时使用生成的语料库。ZXING_HYBRID是ZXing原版每帧新建的HybridBinarizer，作为对照。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BinarizerBenchmark {
+
+    private static final int SYNTHETIC_WIDTH = 640;
+    private static final int SYNTHETIC_HEIGHT = 480;
+    private static final int SYNTHETIC_FRAMES = 32;
+
+    @Param({"ZXING_HYBRID", "HYBRID", "GLOBAL_HISTOGRAM", "INTEGRAL"})
+    public String binarizer;
+
+    @Param({""})
+    public String corpus;
+
+    private FrameCorpus frameCorpus;
+    private MappedLuminanceSource source;
+    private ReusableBinarizer reusable;
+    private MultiFormatReader reader;
+    private int index;
+    private int attempts;
+    private int decoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        File file;
+        if (corpus.isEmpty()) {
+            file = File.createTempFile("benchmark", ".corpus");
+            file.deleteOnExit();
+            writeSyntheticCorpus(file);
+        } else {
+            file = new File(corpus);
+        }
+        frameCorpus = new FrameCorpus(file);
+        source = frameCorpus.buildLuminanceSource(0);
+        if (!"ZXING_HYBRID".equals(binarizer)) {
+            reusable = BinarizerStrategy.valueOf(binarizer).create(source, null);
+        }
+        reader = new MultiFormatReader();
+        reader.setHints(null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (attempts > 0) {
+            System.out.println();
+            System.out.println(binarizer + ": decoded " + decoded + '/' + attempts + " frames");
+        }
+        frameCorpus.close();
+    }
+
+    @Benchmark
+    public BitMatrix binarize() {
+        try {
+            return nextFrame().getBlackMatrix();
+        } catch (NotFoundException nfe) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Result decode() {
+        Binarizer frame = nextFrame();
+        attempts++;
+        try {
+            Result result = reader.decodeWithState(new BinaryBitmap(frame));
+            decoded++;
+            return result;
+        } catch (ReaderException re) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * 把数据源指向语料库的下一帧，返回这一帧的Binarizer
+     */
+    private Binarizer nextFrame() {
+        index = (index + 1) % frameCorpus.getFrameCount();
+        source.setFrame(frameCorpus.getFrame(index));
+        if (reusable == null) {
+            return new HybridBinarizer(source);
+        }
+        reusable.reset();
+        return reusable;
+    }
+
+    /**
+     * 生成带有光照渐变和噪声的二维码画面，每四帧有一帧是空的
+     */
+    private static void writeSyntheticCorpus(File file) throws IOException {
+        int cropSize = 360;
+        int cropLeft = (SYNTHETIC_WIDTH - cropSize) / 2;
+        int cropTop = (SYNTHETIC_HEIGHT - cropSize) / 2;
+        FrameRecording.Header header = new FrameRecording.Header(
+            SYNTHETIC_WIDTH, SYNTHETIC_HEIGHT, 90, cropLeft, cropTop, cropSize, cropSize);
+        Random random = new Random(0);
+        QRCodeWriter writer = new QRCodeWriter();
+        FrameCorpus.Writer corpusWriter = new FrameCorpus.Writer(file, header);
+        try {
+            byte[] frame = new byte[header.getFrameSize()];
+            for (int i = 0; i < SYNTHETIC_FRAMES; i++) {
+                BitMatrix code = null;
+                if (i % 4 != 3) {
+                    try {
+                        code = writer.encode("QR_Simple benchmark frame " + i, BarcodeFormat.QR_CODE, 240, 240);
+                    } catch (Exception e) {
+                        throw new IOException(e);
+                    }
+                }
+                int codeLeft = cropLeft + 60 + random.nextInt(20) - 10;
+                int codeTop = cropTop + 60 + random.nextInt(20) - 10;
+                int light = 120 + random.nextInt(100);
+                for (int y = 0; y < SYNTHETIC_HEIGHT; y++) {
+                    for (int x = 0; x < SYNTHETIC_WIDTH; x++) {
+                        //从左到右变暗的光照
+                        int white = light - x * light / (2 * SYNTHETIC_WIDTH);
+                        int cx = x - codeLeft;
+                        int cy = y - codeTop;
+                        boolean black = code != null && cx >= 0 && cy >= 0 &&
+                            cx < code.getWidth() && cy < code.getHeight() && code.get(cx, cy);
+                        int value = (black ? white / 4 : white) + random.nextInt(24) - 12;
+                        frame[y * SYNTHETIC_WIDTH + x] = (byte) Math.max(0, Math.min(255, value));
+                    }
+                }
+                corpusWriter.write(frame, i * 33000000L);
+            }
+        } finally {
+            corpusWriter.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .include(BinarizerBenchmark.class.getSimpleName());
+        if (args.length > 0) {
+            options.param("corpus", args[0]);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,38 @@
+package com.icechen.qr_simple;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 截止时间只影响自己，父标记被取消时子标记也被取消
+ */
+public class CancelTokenTest {
+
+    @Test
+    public void deadline() {
+        CancelToken parent = new CancelToken();
+        CancelToken token = new CancelToken(parent);
+        token.setDeadline(System.nanoTime() + 60L * 1000000000L);
+        assertFalse(token.isDeadlineExceeded());
+        assertFalse(token.isCancelled());
+
+        token.setDeadline(System.nanoTime() - 1L);
+        assertTrue(token.isDeadlineExceeded());
+        assertTrue(token.isCancelled());
+        assertFalse(parent.isCancelled());
+
+        token.clearDeadline();
+        assertFalse(token.isCancelled());
+        parent.cancel();
+        assertTrue(token.isCancelled());
+        assertFalse(token.isDeadlineExceeded());
+    }
+
+    @Test(expected = DecodeCancelledException.class)
+    public void throwsAfterDeadline() {
+        CancelToken token = new CancelToken();
+        token.setDeadline(System.nanoTime() - 1L);
+        token.throwIfCancelled();
+    }
+}
@@ -0,0 +1,105 @@
+package com.icechen.qr_simple;
+
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在1/4级上检测：没有纹理的画面没有候选区域，竖条纹是一维码，棋盘格是二维码，
+ * 候选区域对齐到格子并向外扩一格，放大回扫描框时到边的区域延伸到扫描框的边
+ */
+public class CandidateDetectorTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @Test
+    public void blankFrameHasNoCandidate() {
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        Arrays.fill(frame, (byte) 128);
+        CandidateDetector detector = new CandidateDetector();
+        detector.detect(frame, WIDTH, HEIGHT);
+        assertEquals(CandidateDetector.Cue.NONE, detector.getCue());
+        assertEquals(0, detector.getLeft());
+        assertEquals(0, detector.getTop());
+        assertEquals(WIDTH, detector.getWidth());
+        assertEquals(HEIGHT, detector.getHeight());
+    }
+
+    @Test
+    public void verticalBarsAreOneD() {
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        //竖条纹放在第3、4列格子和第2行格子里
+        fill(frame, 24, 16, 16, 8, false);
+        CandidateDetector detector = new CandidateDetector();
+        detector.detect(frame, WIDTH, HEIGHT);
+        assertEquals(CandidateDetector.Cue.ONE_D, detector.getCue());
+        assertEquals(16, detector.getLeft());
+        assertEquals(8, detector.getTop());
+        assertEquals(32, detector.getWidth());
+        assertEquals(24, detector.getHeight());
+    }
+
+    @Test
+    public void checkerboardIsTwoD() {
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        fill(frame, 48, 32, 16, 16, true);
+        CandidateDetector detector = new CandidateDetector();
+        detector.detect(frame, WIDTH, HEIGHT);
+        assertEquals(CandidateDetector.Cue.TWO_D, detector.getCue());
+        assertEquals(40, detector.getLeft());
+        assertEquals(24, detector.getTop());
+        //右边和下边到画面的边为止
+        assertEquals(WIDTH - 40, detector.getWidth());
+        assertEquals(HEIGHT - 24, detector.getHeight());
+
+        //扫描框的宽高不是4的倍数时，1/4级丢掉了右边和下边几个像素，到边的区域要延伸过去
+        FrameLuminanceSource source = new FrameLuminanceSource(4 * WIDTH + 3, 4 * HEIGHT + 2);
+        source.setFrame(new byte[(4 * WIDTH + 3) * (4 * HEIGHT + 2)], 4 * WIDTH + 3, 4 * HEIGHT + 2, 0, 0);
+        DetectedFrame detected = new DetectedFrame();
+        detected.copyFrom(source);
+        detected.setDetection(detector, 4, new DecodeRound(new CancelToken()));
+        assertEquals(160, detected.getRegionLeft());
+        assertEquals(96, detected.getRegionTop());
+        assertEquals(4 * WIDTH + 3 - 160, detected.getRegionWidth());
+        assertEquals(4 * HEIGHT + 2 - 96, detected.getRegionHeight());
+
+        //同一个对象可以检测下一帧
+        detector.detect(new byte[WIDTH * HEIGHT], WIDTH, HEIGHT);
+        assertEquals(CandidateDetector.Cue.NONE, detector.getCue());
+    }
+
+    @Test
+    public void innerRegionScalesToFrame() {
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        fill(frame, 24, 16, 16, 8, false);
+        CandidateDetector detector = new CandidateDetector();
+        detector.detect(frame, WIDTH, HEIGHT);
+        FrameLuminanceSource source = new FrameLuminanceSource(4 * WIDTH, 4 * HEIGHT);
+        source.setFrame(new byte[16 * WIDTH * HEIGHT], 4 * WIDTH, 4 * HEIGHT, 0, 0);
+        DetectedFrame detected = new DetectedFrame();
+        detected.copyFrom(source);
+        detected.setDetection(detector, 4, null);
+        assertEquals(CandidateDetector.Cue.ONE_D, detected.getCue());
+        assertEquals(64, detected.getRegionLeft());
+        assertEquals(32, detected.getRegionTop());
+        assertEquals(128, detected.getRegionWidth());
+        assertEquals(96, detected.getRegionHeight());
+    }
+
+    /**
+     * 画2像素宽的条纹或棋盘格，亮的部分不到255，边上的格子不会因为一行亮度差就算作有纹理
+     */
+    private static void fill(byte[] frame, int left, int top, int width, int height, boolean checker) {
+        for (int y = top; y < top + height; y++) {
+            for (int x = left; x < left + width; x++) {
+                int parity = checker ? x / 2 + y / 2 : x / 2;
+                frame[y * WIDTH + x] = (byte) (parity % 2 == 0 ? 0 : 200);
+            }
+        }
+    }
+}
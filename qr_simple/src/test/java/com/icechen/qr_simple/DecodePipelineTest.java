@@ -0,0 +1,85 @@
+package com.icechen.qr_simple;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 队列满时丢掉最旧的帧，解码线程只取最新的一帧，忙的时候不重复唤醒；检测阶段跳过的帧只计数不进队列
+ */
+public class DecodePipelineTest {
+
+    @Test
+    public void decoderTakesNewestFrame() {
+        DecodePipeline pipeline = new DecodePipeline();
+        CandidateDetector detector = new CandidateDetector();
+        DecodeRound round = new DecodeRound(new CancelToken());
+        DetectedFrame first = pipeline.obtain();
+        first.setDetection(detector, 1, round);
+        //解码线程空闲，第一帧需要唤醒它
+        assertTrue(pipeline.publish(first, 0L));
+
+        DetectedFrame last = null;
+        for (int i = 0; i < DecodePipeline.QUEUE_CAPACITY + 3; i++) {
+            last = pipeline.obtain();
+            last.setDetection(detector, 1, round);
+            //已经唤醒过了
+            assertFalse(pipeline.publish(last, 0L));
+        }
+        assertEquals(DecodePipeline.QUEUE_CAPACITY + 4, pipeline.getDetectedFrames());
+
+        assertSame(last, pipeline.takeNewest());
+        assertSame(round, last.getRound());
+        assertEquals(DecodePipeline.QUEUE_CAPACITY + 3, pipeline.getDroppedFrames());
+        assertNull(pipeline.takeNewest());
+        pipeline.recycle(last);
+        assertNull(last.getRound());
+        //解码期间没有新帧，不用再唤醒
+        assertFalse(pipeline.onDecodeFinished());
+    }
+
+    @Test
+    public void frameArrivingDuringDecodeReschedules() {
+        DecodePipeline pipeline = new DecodePipeline();
+        CandidateDetector detector = new CandidateDetector();
+        DecodeRound round = new DecodeRound(new CancelToken());
+        DetectedFrame frame = pipeline.obtain();
+        frame.setDetection(detector, 1, round);
+        assertTrue(pipeline.publish(frame, 0L));
+        DetectedFrame decoding = pipeline.takeNewest();
+
+        //解码的同时检测线程放入了下一帧
+        DetectedFrame next = pipeline.obtain();
+        assertNotSame(decoding, next);
+        next.setDetection(detector, 1, round);
+        assertFalse(pipeline.publish(next, 0L));
+        pipeline.recycle(decoding);
+        assertTrue(pipeline.onDecodeFinished());
+
+        assertSame(next, pipeline.takeNewest());
+        pipeline.reset();
+        assertEquals(0, pipeline.getDetectedFrames());
+        assertEquals(0, pipeline.getDroppedFrames());
+    }
+
+    @Test
+    public void skippedFramesAreCountedButNotQueued() {
+        DecodePipeline pipeline = new DecodePipeline();
+        assertFalse(pipeline.isLastDecodeFailed());
+        pipeline.onFrameDecoded(false);
+        assertTrue(pipeline.isLastDecodeFailed());
+
+        pipeline.onFrameSkipped(0L);
+        pipeline.onFrameEmpty(0L);
+        assertEquals(2, pipeline.getDetectedFrames());
+        assertEquals(1, pipeline.getSkippedFrames());
+        assertEquals(1, pipeline.getEmptyFrames());
+        assertEquals(0, pipeline.getPublishedFrames());
+        assertNull(pipeline.takeNewest());
+
+        //新的会话不带着上一次的失败
+        pipeline.reset();
+        assertFalse(pipeline.isLastDecodeFailed());
+        assertEquals(0, pipeline.getSkippedFrames());
+    }
+}
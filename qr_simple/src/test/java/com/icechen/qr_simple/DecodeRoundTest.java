@@ -0,0 +1,51 @@
+package com.icechen.qr_simple;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 一轮只能有一个通道发布结果，发布或结束时取消这一轮的其他通道，但不影响会话；会话结束以后谁都不能发布
+ */
+public class DecodeRoundTest {
+
+    @Test
+    public void firstClaimWins() {
+        CancelToken session = new CancelToken();
+        DecodeRound round = new DecodeRound(session);
+        CancelToken fastLane = new CancelToken(round.getCancelToken());
+        CancelToken heavyLane = new CancelToken(round.getCancelToken());
+        assertFalse(round.isFinished());
+        assertFalse(heavyLane.isCancelled());
+
+        assertTrue(round.claim());
+        assertFalse(round.claim());
+        assertTrue(round.isFinished());
+        assertTrue(fastLane.isCancelled());
+        assertTrue(heavyLane.isCancelled());
+        assertFalse(session.isCancelled());
+    }
+
+    @Test
+    public void closedRoundCannotBeClaimed() {
+        CancelToken session = new CancelToken();
+        DecodeRound round = new DecodeRound(session);
+        round.close();
+        assertFalse(round.claim());
+        assertTrue(round.getCancelToken().isCancelled());
+
+        DecodeRound next = new DecodeRound(session);
+        assertFalse(next.getCancelToken().isCancelled());
+        session.cancel();
+        assertTrue(next.getCancelToken().isCancelled());
+    }
+
+    @Test
+    public void cancelledSessionCannotClaim() {
+        //会话结束前开始解码的通道，结束以后才找到结果
+        CancelToken session = new CancelToken();
+        DecodeRound round = new DecodeRound(session);
+        session.cancel();
+        assertFalse(round.claim());
+    }
+}
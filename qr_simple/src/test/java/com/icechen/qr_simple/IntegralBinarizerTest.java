@@ -0,0 +1,59 @@
+package com.icechen.qr_simple;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 积分图Binarizer在光照不均时的表现，以及取消
+ */
+public class IntegralBinarizerTest {
+
+    private static final int SIZE = 240;
+
+    @Test
+    public void decodesUnderGradient() throws Exception {
+        FrameLuminanceSource source = new FrameLuminanceSource(SIZE, SIZE);
+        source.setFrame(shadedCode("QR_Simple"), SIZE, SIZE, 0, 0);
+        IntegralBinarizer binarizer = new IntegralBinarizer(source, null);
+        assertEquals("QR_Simple", new MultiFormatReader().decode(new BinaryBitmap(binarizer)).getText());
+
+        //复用同一个BitMatrix解码下一帧
+        BitMatrix first = binarizer.getBlackMatrix();
+        source.setFrame(shadedCode("next frame"), SIZE, SIZE, 0, 0);
+        binarizer.reset();
+        assertEquals("next frame", new MultiFormatReader().decode(new BinaryBitmap(binarizer)).getText());
+        assertSame(first, binarizer.getBlackMatrix());
+    }
+
+    @Test(expected = DecodeCancelledException.class)
+    public void cancelled() throws Exception {
+        CancelToken cancelToken = new CancelToken();
+        cancelToken.cancel();
+        FrameLuminanceSource source = new FrameLuminanceSource(SIZE, SIZE);
+        source.setFrame(shadedCode("QR_Simple"), SIZE, SIZE, 0, 0);
+        new IntegralBinarizer(source, cancelToken).getBlackMatrix();
+    }
+
+    /**
+     * 左边亮右边暗的二维码，右边的白色比左边的黑色还暗，全局阈值无法处理
+     */
+    private static byte[] shadedCode(String contents) throws Exception {
+        BitMatrix code = new QRCodeWriter().encode(contents, BarcodeFormat.QR_CODE, SIZE, SIZE);
+        byte[] frame = new byte[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int white = 250 - x * 200 / SIZE;
+                frame[y * SIZE + x] = (byte) (code.get(x, y) ? white / 3 : white);
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,218 @@
+package com.icechen.qr_simple;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+import com.icechen.qr_simple.camera.FrameRecording;
+import com.icechen.qr_simple.camera.ReplayLoop;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 把录制文件回放进检测阶段、队列和解码阶段：静止的空画面被跳过，二维码只解码候选区域，结果点换算回扫描框；
+ * 二维码在画面中移动时，候选区域的Binarizer和BitMatrix跨帧复用
+ */
+public class ReplayDecodeTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int CROP_LEFT = 60;
+    private static final int CROP_TOP = 20;
+    private static final int CROP_SIZE = 200;
+    //二维码在扫描框中的位置和大小
+    private static final int CODE_OFFSET = 24;
+    private static final int CODE_SIZE = 116;
+    //移动的二维码：整个画面就是扫描框，每帧的位置跨过检测用的32像素的格子
+    private static final int MOVING_FRAME_SIZE = 256;
+    private static final int MOVING_CODE_SIZE = 87;
+    private static final int[] MOVING_OFFSETS = {37, 53, 70, 90, 110, 130};
+
+    @Test
+    public void replayThroughDetectAndDecodeStages() throws Exception {
+        File file = File.createTempFile("frames", ".rec");
+        file.deleteOnExit();
+        FrameRecording.Header header = new FrameRecording.Header(
+            WIDTH, HEIGHT, 0, CROP_LEFT, CROP_TOP, CROP_SIZE, CROP_SIZE);
+        FrameRecording.Writer writer = new FrameRecording.Writer(file, header);
+        byte[] blank = new byte[header.getFrameSize()];
+        Arrays.fill(blank, (byte) 0xFF);
+        byte[] code = qrFrame("QR_Simple", header, CODE_SIZE, CODE_OFFSET, CODE_OFFSET);
+        //5帧静止的空画面，然后5帧二维码，30帧每秒
+        for (int i = 0; i < 10; i++) {
+            writer.write(i < 5 ? blank : code, i * 33000000L);
+        }
+        writer.close();
+
+        final DecodePipeline pipeline = new DecodePipeline();
+        final DetectStage stage = new DetectStage(pipeline);
+        final FrameRegion region = new FrameRegion(new CancelToken());
+        final MultiFormatReader reader = new MultiFormatReader();
+        final DecodeRound round = new DecodeRound(new CancelToken());
+        final FrameLuminanceSource source = new FrameLuminanceSource(CROP_SIZE, CROP_SIZE);
+        final List<Result> results = new ArrayList<>();
+        final List<Integer> regionWidths = new ArrayList<>();
+        ReplayLoop loop = new ReplayLoop(file, false);
+        try {
+            loop.run(new ReplayLoop.Sink() {
+                @Override
+                public void onFrame(byte[] luminance, int width, int height, long timestampNanos) {
+                    source.setFrame(luminance, width, height, CROP_LEFT, CROP_TOP);
+                    if (!stage.detect(source, round, timestampNanos / 1000000L)) {
+                        return;
+                    }
+                    //和DecodeHandler一样，被唤醒以后取最新检测好的一帧
+                    DetectedFrame detected = pipeline.takeNewest();
+                    region.setFrame(detected);
+                    DecodeContext context = region.selectRegion(detected, BinarizerStrategy.HYBRID);
+                    regionWidths.add(context.getSource().getWidth());
+                    Result result = decode(reader, new BinaryBitmap(context.getBinarizer()));
+                    if (result != null) {
+                        region.toFramePoints(result);
+                        results.add(result);
+                    }
+                    pipeline.onFrameDecoded(result != null);
+                    pipeline.recycle(detected);
+                    assertFalse(pipeline.onDecodeFinished());
+                }
+            });
+        } finally {
+            loop.close();
+        }
+
+        assertEquals(10, loop.getDeliveredFrames());
+        assertEquals(10, pipeline.getDetectedFrames());
+        //第一帧空画面解码失败以后，后面4帧没有变化，直接跳过
+        assertEquals(4, pipeline.getSkippedFrames());
+        assertEquals(6, pipeline.getPublishedFrames());
+        assertEquals(6, regionWidths.size());
+        //解码了6成的帧，有码的帧全部识别
+        assertEquals(0.6, (double) regionWidths.size() / loop.getDeliveredFrames(), 1e-9);
+        assertEquals(5, results.size());
+        assertEquals(5.0 / 6.0, (double) results.size() / regionWidths.size(), 1e-9);
+
+        //空画面解码整个扫描框，二维码只解码候选区域
+        assertEquals(CROP_SIZE, (int) regionWidths.get(0));
+        assertTrue(regionWidths.get(1) < CROP_SIZE);
+        for (Result result : results) {
+            assertEquals("QR_Simple", result.getText());
+            assertEquals(BarcodeFormat.QR_CODE, result.getBarcodeFormat());
+            for (ResultPoint point : result.getResultPoints()) {
+                assertTrue(point.getX() > CODE_OFFSET && point.getX() < CODE_OFFSET + CODE_SIZE);
+                assertTrue(point.getY() > CODE_OFFSET && point.getY() < CODE_OFFSET + CODE_SIZE);
+            }
+        }
+    }
+
+    @Test
+    public void movingCodeReusesRegionBinarizer() throws Exception {
+        File file = File.createTempFile("frames", ".rec");
+        file.deleteOnExit();
+        FrameRecording.Header header = new FrameRecording.Header(
+            MOVING_FRAME_SIZE, MOVING_FRAME_SIZE, 0, 0, 0, MOVING_FRAME_SIZE, MOVING_FRAME_SIZE);
+        FrameRecording.Writer writer = new FrameRecording.Writer(file, header);
+        //手持时二维码在画面中漂移，跨过检测用的格子
+        for (int i = 0; i < MOVING_OFFSETS.length; i++) {
+            writer.write(qrFrame("QR_Simple", header, MOVING_CODE_SIZE, MOVING_OFFSETS[i], MOVING_OFFSETS[i] / 2),
+                         i * 33000000L);
+        }
+        writer.close();
+
+        final DecodePipeline pipeline = new DecodePipeline();
+        final DetectStage stage = new DetectStage(pipeline);
+        final FrameRegion region = new FrameRegion(new CancelToken());
+        final MultiFormatReader reader = new MultiFormatReader();
+        final DecodeRound round = new DecodeRound(new CancelToken());
+        final FrameLuminanceSource source = new FrameLuminanceSource(MOVING_FRAME_SIZE, MOVING_FRAME_SIZE);
+        final List<Result> results = new ArrayList<>();
+        final List<Binarizer> binarizers = new ArrayList<>();
+        final List<BitMatrix> matrices = new ArrayList<>();
+        final List<Integer> regionLefts = new ArrayList<>();
+        ReplayLoop loop = new ReplayLoop(file, false);
+        try {
+            loop.run(new ReplayLoop.Sink() {
+                @Override
+                public void onFrame(byte[] luminance, int width, int height, long timestampNanos) {
+                    source.setFrame(luminance, width, height, 0, 0);
+                    assertTrue(stage.detect(source, round, timestampNanos / 1000000L));
+                    DetectedFrame detected = pipeline.takeNewest();
+                    region.setFrame(detected);
+                    DecodeContext context = region.selectRegion(detected, BinarizerStrategy.HYBRID);
+                    assertTrue(context.getSource().getWidth() < MOVING_FRAME_SIZE);
+                    Binarizer binarizer = context.getBinarizer();
+                    try {
+                        matrices.add(binarizer.getBlackMatrix());
+                    } catch (NotFoundException nfe) {
+                        fail();
+                    }
+                    binarizers.add(binarizer);
+                    Result result = decode(reader, new BinaryBitmap(binarizer));
+                    if (result != null) {
+                        region.toFramePoints(result);
+                        regionLefts.add((int) result.getResultPoints()[0].getX() - MOVING_OFFSETS[results.size()]);
+                        results.add(result);
+                    }
+                    pipeline.onFrameDecoded(result != null);
+                    pipeline.recycle(detected);
+                    pipeline.onDecodeFinished();
+                }
+            });
+        } finally {
+            loop.close();
+        }
+
+        assertEquals(MOVING_OFFSETS.length, results.size());
+        for (int i = 1; i < MOVING_OFFSETS.length; i++) {
+            //尺寸对齐到固定的比例，Binarizer和它的BitMatrix没有重新创建
+            assertSame(binarizers.get(0), binarizers.get(i));
+            assertSame(matrices.get(0), matrices.get(i));
+            //结果点跟着二维码一起移动
+            assertEquals(regionLefts.get(0), regionLefts.get(i));
+        }
+    }
+
+    private static Result decode(MultiFormatReader reader, BinaryBitmap bitmap) {
+        try {
+            return reader.decodeWithState(bitmap);
+        } catch (ReaderException re) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * 生成一帧扫描框里有一个较小二维码的Y平面
+     *
+     * @param left 二维码在扫描框中的左边
+     * @param top 二维码在扫描框中的上边
+     */
+    private static byte[] qrFrame(String contents, FrameRecording.Header header, int size, int left, int top)
+        throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode(contents, BarcodeFormat.QR_CODE, size, size);
+        byte[] frame = new byte[header.getFrameSize()];
+        Arrays.fill(frame, (byte) 0xFF);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (matrix.get(x, y)) {
+                    frame[(header.cropTop + top + y) * header.width + header.cropLeft + left + x] = 0;
+                }
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,83 @@
+package com.icechen.qr_simple;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 复用的Binarizer在重置以后应该和ZXing的原版算出完全相同的结果
+ */
+public class ReusableBinarizerTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @Test
+    public void matchesZXingAcrossFrames() throws Exception {
+        Random random = new Random(42);
+        FrameLuminanceSource source = new FrameLuminanceSource(200, 160);
+        ReusableHybridBinarizer hybrid = new ReusableHybridBinarizer(source);
+        ReusableGlobalHistogramBinarizer global = new ReusableGlobalHistogramBinarizer(source);
+        InvertedBinarizer inverted = new InvertedBinarizer(hybrid);
+        BitMatrix previous = null;
+        for (int i = 0; i < 3; i++) {
+            byte[] frame = randomFrame(random);
+            source.setFrame(frame, WIDTH, HEIGHT, 60, 40);
+            hybrid.reset();
+            global.reset();
+            inverted.reset();
+
+            FrameLuminanceSource fresh = new FrameLuminanceSource(200, 160);
+            fresh.setFrame(frame, WIDTH, HEIGHT, 60, 40);
+            BitMatrix expected = new HybridBinarizer(fresh).getBlackMatrix();
+            BitMatrix actual = hybrid.getBlackMatrix();
+            assertEquals(expected, actual);
+            assertEquals(new GlobalHistogramBinarizer(fresh).getBlackMatrix(), global.getBlackMatrix());
+            assertEquals(new GlobalHistogramBinarizer(fresh).getBlackRow(80, null),
+                         global.getBlackRow(80, null));
+            assertFalse(inverted.getBlackMatrix().get(0, 0) == actual.get(0, 0));
+            if (previous != null) {
+                //尺寸不变时复用同一个BitMatrix
+                assertSame(previous, actual);
+            }
+            previous = actual;
+        }
+    }
+
+    @Test
+    public void contextRebuildsOnlyWhenSizeChanges() {
+        DecodeContext context = new DecodeContext(new CancelToken());
+        FrameLuminanceSource source = new FrameLuminanceSource(200, 160);
+        context.setSource(source, BinarizerStrategy.HYBRID);
+        Binarizer binarizer = context.getBinarizer();
+        context.setSource(source, BinarizerStrategy.GLOBAL_HISTOGRAM);
+        assertNotSame(binarizer, context.getBinarizer());
+        context.setSource(source, BinarizerStrategy.HYBRID);
+        assertSame(binarizer, context.getBinarizer());
+        context.setSource(new FrameLuminanceSource(100, 100), BinarizerStrategy.HYBRID);
+        assertNotSame(binarizer, context.getBinarizer());
+    }
+
+    /**
+     * 带有明暗渐变和块状图案的帧，覆盖低对比度块和高对比度块两种情况
+     */
+    private static byte[] randomFrame(Random random) {
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int base = 40 + x * 160 / WIDTH;
+                boolean dark = ((x / 12) + (y / 12)) % 3 == 0 && random.nextInt(4) != 0;
+                frame[y * WIDTH + x] = (byte) (dark ? base / 3 : base + random.nextInt(30));
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,65 @@
+package com.icechen.qr_simple;
+
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 噪点和整体亮度变化不算画面变化，移动的物体算
+ */
+public class SceneChangeDetectorTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @Test
+    public void staticScene() {
+        Random random = new Random(7);
+        byte[] scene = scene(0);
+        SceneChangeDetector detector = new SceneChangeDetector();
+        assertTrue(detector.update(source(scene)));
+        for (int i = 0; i < 10; i++) {
+            //传感器噪点加上自动曝光造成的整体变亮
+            byte[] frame = new byte[scene.length];
+            for (int j = 0; j < frame.length; j++) {
+                int value = (scene[j] & 0xFF) + i * 3 + random.nextInt(7) - 3;
+                frame[j] = (byte) Math.max(0, Math.min(255, value));
+            }
+            assertFalse(detector.update(source(frame)));
+        }
+    }
+
+    @Test
+    public void movingObject() {
+        SceneChangeDetector detector = new SceneChangeDetector();
+        assertTrue(detector.update(source(scene(0))));
+        assertTrue(detector.update(source(scene(80))));
+        assertFalse(detector.update(source(scene(80))));
+        detector.reset();
+        assertTrue(detector.update(source(scene(80))));
+    }
+
+    /**
+     * 浅色背景上一个深色方块
+     */
+    private static byte[] scene(int left) {
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean inside = x >= left + 40 && x < left + 160 && y >= 60 && y < 180;
+                frame[y * WIDTH + x] = (byte) (inside ? 40 : 200);
+            }
+        }
+        return frame;
+    }
+
+    private static FrameLuminanceSource source(byte[] frame) {
+        FrameLuminanceSource source = new FrameLuminanceSource(WIDTH, HEIGHT);
+        source.setFrame(frame, WIDTH, HEIGHT, 0, 0);
+        return source;
+    }
+}
@@ -0,0 +1,61 @@
+package com.icechen.qr_simple;
+
+import com.icechen.qr_simple.camera.FrameLuminanceSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 一遍扫描生成的各级数据应该等于对应大小的盒式滤波
+ */
+public class YPlaneDownsamplerTest {
+
+    @Test
+    public void boxFilters() {
+        int width = 10;
+        int height = 9;
+        byte[] frame = new byte[width * height];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (byte) (i * 37 % 256);
+        }
+        FrameLuminanceSource source = new FrameLuminanceSource(width, height);
+        source.setFrame(frame, width, height, 0, 0);
+        YPlaneDownsampler downsampler = new YPlaneDownsampler();
+        downsampler.downsample(source);
+
+        FrameLuminanceSource half = downsampler.getHalf();
+        assertEquals(5, half.getWidth());
+        assertEquals(4, half.getHeight());
+        FrameLuminanceSource quarter = downsampler.getQuarter();
+        assertEquals(2, quarter.getWidth());
+        assertEquals(2, quarter.getHeight());
+        assertEquals(5, downsampler.getThumbnailWidth());
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 5; x++) {
+                int expected = (box(frame, width, 2 * x, 2 * y, 2) + 2) / 4;
+                assertEquals(expected, half.getMatrix()[y * 5 + x] & 0xFF);
+                assertEquals(0xFF000000 | expected * 0x010101, downsampler.getThumbnail()[y * 5 + x]);
+            }
+        }
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 2; x++) {
+                assertEquals((box(frame, width, 4 * x, 4 * y, 4) + 8) / 16, quarter.getMatrix()[y * 2 + x] & 0xFF);
+            }
+        }
+
+        //尺寸不变时复用同一组对象
+        downsampler.downsample(source);
+        assertSame(half, downsampler.getHalf());
+    }
+
+    private static int box(byte[] frame, int width, int left, int top, int size) {
+        int sum = 0;
+        for (int y = top; y < top + size; y++) {
+            for (int x = left; x < left + size; x++) {
+                sum += frame[y * width + x] & 0xFF;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,78 @@
+package com.icechen.qr_simple.camera;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 语料库的读写，以及从映射的内存直接解码
+ */
+public class FrameCorpusTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @Test
+    public void writeAndMap() throws Exception {
+        File file = File.createTempFile("frames", ".corpus");
+        file.deleteOnExit();
+        FrameRecording.Header header = new FrameRecording.Header(WIDTH, HEIGHT, 90, 60, 20, 200, 200);
+        FrameCorpus.Writer writer = new FrameCorpus.Writer(file, header);
+        byte[] data = new byte[WIDTH * HEIGHT * 3 / 2];
+        for (int i = 0; i < 100; i++) {
+            Arrays.fill(data, (byte) i);
+            writer.write(data, i * 33000000L);
+        }
+        writer.close();
+        assertEquals(FrameCorpus.HEADER_SIZE + 100L * WIDTH * HEIGHT + 8 * 100, file.length());
+
+        FrameCorpus corpus = new FrameCorpus(file);
+        try {
+            assertEquals(100, corpus.getFrameCount());
+            assertEquals(90, corpus.getHeader().rotation);
+            assertEquals(200, corpus.getHeader().cropWidth);
+            assertEquals(99 * 33000000L, corpus.getTimestampNanos(99));
+            ByteBuffer frame = corpus.getFrame(42);
+            assertEquals(WIDTH * HEIGHT, frame.remaining());
+            assertEquals(42, frame.get(0));
+            assertEquals(42, frame.get(WIDTH * HEIGHT - 1));
+            byte[] row = corpus.buildLuminanceSource(7).getRow(0, null);
+            assertEquals(200, row.length);
+            assertEquals(7, row[199]);
+        } finally {
+            corpus.close();
+        }
+    }
+
+    @Test
+    public void decodeFromRecording() throws Exception {
+        File recording = File.createTempFile("frames", ".rec");
+        recording.deleteOnExit();
+        File file = File.createTempFile("frames", ".corpus");
+        file.deleteOnExit();
+        FrameRecording.Header header = new FrameRecording.Header(WIDTH, HEIGHT, 0, 60, 20, 200, 200);
+        FrameRecording.Writer writer = new FrameRecording.Writer(recording, header);
+        writer.write(new byte[WIDTH * HEIGHT], 0L);
+        writer.write(FrameRecordingTest.qrFrame("QR_Simple", header), 1L);
+        writer.close();
+
+        assertEquals(2, FrameCorpus.fromRecording(recording, file));
+        FrameCorpus corpus = new FrameCorpus(file);
+        try {
+            Result result = new MultiFormatReader().decode(
+                new BinaryBitmap(new HybridBinarizer(corpus.buildLuminanceSource(1))));
+            assertEquals("QR_Simple", result.getText());
+        } finally {
+            corpus.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.icechen.qr_simple.camera;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 录制文件的读写，以及按最快速度和真实速度回放
+ */
+public class FrameRecordingTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @Test
+    public void roundTrip() throws Exception {
+        File file = File.createTempFile("frames", ".rec");
+        file.deleteOnExit();
+        FrameRecording.Header header = new FrameRecording.Header(WIDTH, HEIGHT, 90, 40, 20, 240, 200);
+        //NV21的帧比Y平面大，UV部分不应该被写进去
+        byte[] first = new byte[WIDTH * HEIGHT * 3 / 2];
+        byte[] second = new byte[WIDTH * HEIGHT * 3 / 2];
+        Arrays.fill(first, (byte) 1);
+        Arrays.fill(second, (byte) 2);
+
+        FrameRecording.Writer writer = new FrameRecording.Writer(file, header);
+        writer.write(first, 1000L);
+        writer.write(second, 2000L);
+        writer.close();
+
+        FrameRecording.Reader reader = new FrameRecording.Reader(file);
+        try {
+            FrameRecording.Header read = reader.getHeader();
+            assertEquals(WIDTH, read.width);
+            assertEquals(HEIGHT, read.height);
+            assertEquals(90, read.rotation);
+            assertEquals(40, read.cropLeft);
+            assertEquals(20, read.cropTop);
+            assertEquals(240, read.cropWidth);
+            assertEquals(200, read.cropHeight);
+
+            FrameRecording.Frame frame = reader.next();
+            assertEquals(1000L, frame.timestampNanos);
+            assertEquals(WIDTH * HEIGHT, frame.luminance.length);
+            assertEquals(1, frame.luminance[0]);
+            frame = reader.next();
+            assertEquals(2000L, frame.timestampNanos);
+            assertEquals(2, frame.luminance[WIDTH * HEIGHT - 1]);
+            assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void fullSpeedReplayDeliversEveryFrame() throws Exception {
+        File file = recording(10, 33000000L);
+        ReplayLoop loop = new ReplayLoop(file, false);
+        final List<Long> timestamps = new ArrayList<>();
+        try {
+            loop.run(new ReplayLoop.Sink() {
+                @Override
+                public void onFrame(byte[] luminance, int width, int height, long timestampNanos) {
+                    assertEquals(WIDTH, width);
+                    assertEquals(HEIGHT, height);
+                    assertEquals((byte) timestamps.size(), luminance[0]);
+                    timestamps.add(timestampNanos);
+                }
+            });
+        } finally {
+            loop.close();
+        }
+        assertEquals(10, timestamps.size());
+        assertEquals(10, loop.getDeliveredFrames());
+        assertEquals(0, loop.getSkippedFrames());
+        assertEquals(9 * 33000000L, (long) timestamps.get(9));
+        assertTrue(loop.isFinished());
+    }
+
+    @Test
+    public void realTimeReplaySkipsFramesTakenDuringSlowDecodes() throws Exception {
+        //10ms一帧，每帧要处理30ms，处理期间“拍”的帧应该被跳过
+        File file = recording(30, 10000000L);
+        ReplayLoop loop = new ReplayLoop(file, true);
+        try {
+            loop.run(new ReplayLoop.Sink() {
+                @Override
+                public void onFrame(byte[] luminance, int width, int height, long timestampNanos) {
+                    try {
+                        Thread.sleep(30L);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        } finally {
+            loop.close();
+        }
+        assertEquals(30, loop.getDeliveredFrames() + loop.getSkippedFrames());
+        assertTrue(loop.getSkippedFrames() >= 15);
+        assertTrue(loop.getDeliveredFrames() >= 5);
+    }
+
+    /**
+     * 录制count帧，第i帧的Y平面都是i
+     */
+    private static File recording(int count, long intervalNanos) throws Exception {
+        File file = File.createTempFile("frames", ".rec");
+        file.deleteOnExit();
+        FrameRecording.Header header = new FrameRecording.Header(WIDTH, HEIGHT, 0, 60, 20, 200, 200);
+        FrameRecording.Writer writer = new FrameRecording.Writer(file, header);
+        byte[] frame = new byte[header.getFrameSize()];
+        for (int i = 0; i < count; i++) {
+            Arrays.fill(frame, (byte) i);
+            writer.write(frame, i * intervalNanos);
+        }
+        writer.close();
+        return file;
+    }
+
+    /**
+     * 生成一帧在扫描框里有二维码的Y平面
+     */
+    static byte[] qrFrame(String contents, FrameRecording.Header header) throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode(
+            contents, BarcodeFormat.QR_CODE, header.cropWidth, header.cropHeight);
+        byte[] frame = new byte[header.getFrameSize()];
+        Arrays.fill(frame, (byte) 0xFF);
+        for (int y = 0; y < header.cropHeight; y++) {
+            for (int x = 0; x < header.cropWidth; x++) {
+                if (matrix.get(x, y)) {
+                    frame[(header.cropTop + y) * header.width + header.cropLeft + x] = 0;
+                }
+            }
+        }
+        return frame;
+    }
+}
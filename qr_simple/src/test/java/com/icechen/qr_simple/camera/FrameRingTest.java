@@ -0,0 +1,59 @@
+package com.icechen.qr_simple.camera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 队列满时覆盖最旧的帧，解码线程总是取到最新的帧，缓冲区不会同时交给两方
+ */
+public class FrameRingTest {
+
+    @Test
+    public void overwritesOldestAndTakesNewest() {
+        final List<byte[]> camera = new ArrayList<>();
+        FrameRing ring = new FrameRing(2, 6, 2, 2, new FrameRing.Recycler() {
+            @Override
+            public void recycle(FrameRing ring, byte[] buffer) {
+                camera.add(buffer);
+            }
+        });
+        ring.recycleAll();
+        assertEquals(4, camera.size());
+        assertFalse(ring.hasFrame());
+        assertNull(ring.take());
+
+        byte[] first = camera.remove(0);
+        byte[] second = camera.remove(0);
+        byte[] third = camera.remove(0);
+        assertTrue(ring.publish(first, 10L));
+        assertTrue(ring.publish(second, 20L));
+        assertEquals(1, camera.size());
+        //第三帧覆盖第一帧，第一帧的缓冲区还给相机
+        assertTrue(ring.publish(third, 30L));
+        assertSame(first, camera.get(camera.size() - 1));
+        assertEquals(1, ring.getOverwrittenFrames());
+
+        assertTrue(ring.hasFrame());
+        FrameRing.Frame frame = ring.take();
+        assertSame(third, frame.getData());
+        assertEquals(2, frame.getSequence());
+        assertEquals(30L, frame.getTimestampNanos());
+        assertEquals(2, frame.getWidth());
+        assertFalse(ring.hasFrame());
+        assertNull(ring.take());
+
+        ring.release(frame);
+        assertSame(third, camera.get(camera.size() - 1));
+        //不是这个队列的缓冲区
+        assertFalse(ring.publish(new byte[6], 40L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCapacityThatIsNotPowerOfTwo() {
+        new FrameRing(3, 6, 2, 2, null);
+    }
+}